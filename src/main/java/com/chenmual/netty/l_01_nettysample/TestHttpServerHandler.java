@@ -1,11 +1,10 @@
 package com.chenmual.netty.l_01_nettysample;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.handler.codec.http.*;
-import io.netty.util.CharsetUtil;
 
 import java.net.URI;
 import java.util.concurrent.TimeUnit;
@@ -40,7 +39,8 @@ public class TestHttpServerHandler extends SimpleChannelInboundHandler<HttpObjec
 
 
 			//构造字符串的bytebuf对象
-			ByteBuf content = Unpooled.copiedBuffer("hello world",CharsetUtil.UTF_8);
+			//用channel的allocator分配(池化) response写出后由netty释放
+			ByteBuf content = ByteBufUtil.writeUtf8(ctx.alloc(), "hello world");
 
 			//构造支持响应的对象
 			FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1,//基于1.1的协议链接会保持3秒
@@ -1,5 +1,6 @@
 package com.chenmual.netty.l_02_withclient;
 
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
@@ -11,6 +12,7 @@ public class MyClient {
 		EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
 		try {
 			Bootstrap bootstrap = new Bootstrap();
+			ByteBufAllocatorConfig.configure(bootstrap);
 			bootstrap.group(eventLoopGroup).channel(NioSocketChannel.class)
 					.handler(new MyClientInitializer());//客户端一般没有worker所以只使用handler就足够了 不需要childhadler
 
@@ -1,12 +1,12 @@
 package com.chenmual.netty.l_02_withclient;
 
+import com.chenmual.netty.l_10_charset.Utf8StringEncoder;
+import com.chenmual.netty.l_12_bytebuff.LengthFieldCompositeEncoder;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 
 public class MyClientInitializer extends ChannelInitializer<SocketChannel> {
@@ -15,9 +15,9 @@ public class MyClientInitializer extends ChannelInitializer<SocketChannel> {
 		ChannelPipeline channelPipeline = ch.pipeline();
 
 		channelPipeline.addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
-		channelPipeline.addLast(new LengthFieldPrepender(4));
+		channelPipeline.addLast(LengthFieldCompositeEncoder.INSTANCE);//长度header和body拼成CompositeByteBuf 不复制body
 		channelPipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
-		channelPipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+		channelPipeline.addLast(Utf8StringEncoder.INSTANCE);
 
 		channelPipeline.addLast(new MyClientHandler());
 	}
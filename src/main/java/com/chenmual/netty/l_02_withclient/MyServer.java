@@ -1,5 +1,6 @@
 package com.chenmual.netty.l_02_withclient;
 
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
@@ -14,6 +15,7 @@ public class MyServer {
 		EventLoopGroup workerGroup = new NioEventLoopGroup();
 		try {
 			ServerBootstrap serverBootstrap = new ServerBootstrap();
+			ByteBufAllocatorConfig.configure(serverBootstrap);
 			serverBootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
 					.childHandler(new MyServerInitializer());//childhandler是给workerGroup操作的, 而handler是给bossGroup使用的
 
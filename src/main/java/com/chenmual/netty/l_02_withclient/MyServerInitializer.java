@@ -1,12 +1,12 @@
 package com.chenmual.netty.l_02_withclient;
 
+import com.chenmual.netty.l_10_charset.Utf8StringEncoder;
+import com.chenmual.netty.l_12_bytebuff.LengthFieldCompositeEncoder;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
-import io.netty.handler.codec.LengthFieldPrepender;
 import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 
 public class MyServerInitializer extends ChannelInitializer<SocketChannel> {
@@ -15,9 +15,9 @@ public class MyServerInitializer extends ChannelInitializer<SocketChannel> {
 		ChannelPipeline pipeline = ch.pipeline();
 
 		pipeline.addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, 4, 0, 4));
-		pipeline.addLast(new LengthFieldPrepender(4));
+		pipeline.addLast(LengthFieldCompositeEncoder.INSTANCE);//长度header和body拼成CompositeByteBuf 不复制body
 		pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
-		pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+		pipeline.addLast(Utf8StringEncoder.INSTANCE);
 
 		pipeline.addLast(new MyServerHandler());//自己的处理器
 	}
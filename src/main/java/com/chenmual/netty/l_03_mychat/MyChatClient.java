@@ -1,5 +1,6 @@
 package com.chenmual.netty.l_03_mychat;
 
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
@@ -14,6 +15,7 @@ public class MyChatClient {
 			EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
 			try {
 				Bootstrap bootstrap = new Bootstrap();
+				ByteBufAllocatorConfig.configure(bootstrap);
 				bootstrap.group(eventLoopGroup).channel(NioSocketChannel.class)
 						.handler(new MyChatClientInitializer());//客户端一般没有worker所以只使用handler就足够了 不需要childhadler
 
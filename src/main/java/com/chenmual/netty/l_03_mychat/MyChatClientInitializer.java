@@ -1,12 +1,12 @@
 package com.chenmual.netty.l_03_mychat;
 
+import com.chenmual.netty.l_10_charset.Utf8StringEncoder;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.DelimiterBasedFrameDecoder;
 import io.netty.handler.codec.Delimiters;
 import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 
 public class MyChatClientInitializer extends ChannelInitializer<SocketChannel> {
@@ -16,7 +16,7 @@ public class MyChatClientInitializer extends ChannelInitializer<SocketChannel> {
 		ChannelPipeline channelPipeline = ch.pipeline();
 		channelPipeline.addLast(new DelimiterBasedFrameDecoder(4096, Delimiters.lineDelimiter()));//分隔符解码器
 		channelPipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
-		channelPipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
+		channelPipeline.addLast(Utf8StringEncoder.INSTANCE);
 
 		channelPipeline.addLast(new MyChatClientHandler());
 	}
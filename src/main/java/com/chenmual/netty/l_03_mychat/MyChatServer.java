@@ -1,5 +1,6 @@
 package com.chenmual.netty.l_03_mychat;
 
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
@@ -12,6 +13,7 @@ public class MyChatServer {
 		EventLoopGroup workerGroup = new NioEventLoopGroup();
 		try {
 			ServerBootstrap serverBootstrap = new ServerBootstrap();
+			ByteBufAllocatorConfig.configure(serverBootstrap);
 			serverBootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
 					.childHandler(new MyChatServerInitializer());
 
@@ -1,5 +1,6 @@
 package com.chenmual.netty.l_06_protobuf;
 
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
@@ -12,6 +13,7 @@ public class TestClient {
 		try {
 
 			Bootstrap bootstrap = new Bootstrap();
+			ByteBufAllocatorConfig.configure(bootstrap);
 			bootstrap.group(eventLoopGroup).channel(NioSocketChannel.class)
 					.handler(new TestClientInitializer());
 
@@ -0,0 +1,87 @@
+package com.chenmual.netty.l_08_grpc;
+
+import com.chenmual.proto.StreamRequest;
+import com.chenmual.proto.StreamResponse;
+import com.chenmual.proto.StudentServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * biTalk单个双向流的吞吐测试: 在一个流上发送N条StreamRequest 统计每秒收到的StreamResponse数
+ *
+ * 客户端同样按isReady发送 不会把消息无限堆在客户端内存中
+ * 用法: BiTalkBenchmark [消息数] [轮数] [端口]
+ */
+public class BiTalkBenchmark {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int messages = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int port = args.length > 2 ? Integer.parseInt(args[2]) : 8899;
+
+		Server server = GrpcTransport.TCP.serverBuilder(port).addService(new StudentServiceImpl()).build().start();
+		ManagedChannel managedChannel = GrpcTransport.TCP.channelBuilder("localhost", port).build();
+		try {
+			StudentServiceGrpc.StudentServiceStub stub = StudentServiceGrpc.newStub(managedChannel);
+			StreamRequest request = StreamRequest.newBuilder().setRequestInfo("ping").build();
+			//第一轮作为预热
+			for (int round = 0; round <= rounds; round++) {
+				long start = System.nanoTime();
+				long received = runOnce(stub, request, messages);
+				long elapsed = System.nanoTime() - start;
+				System.out.printf("%s: %d messages in %d ms, %.0f msg/s%n", round == 0 ? "warmup" : "round " + round,
+						received, TimeUnit.NANOSECONDS.toMillis(elapsed), received * 1e9 / elapsed);
+			}
+		} finally {
+			managedChannel.shutdownNow();
+			server.shutdownNow();
+		}
+	}
+
+	private static long runOnce(StudentServiceGrpc.StudentServiceStub stub, StreamRequest request, int messages) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		long[] received = new long[1];
+
+		stub.biTalk(new ClientResponseObserver<StreamRequest, StreamResponse>() {
+			private int sent = 0;
+
+			@Override
+			public void beforeStart(ClientCallStreamObserver<StreamRequest> requestStream) {
+				requestStream.setOnReadyHandler(() -> {
+					while (requestStream.isReady() && sent < messages) {
+						requestStream.onNext(request);
+						sent++;
+					}
+					if (sent == messages) {
+						sent++;
+						requestStream.onCompleted();
+					}
+				});
+			}
+
+			@Override
+			public void onNext(StreamResponse value) {
+				received[0]++;
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				System.out.println(t.getMessage());
+				done.countDown();
+			}
+
+			@Override
+			public void onCompleted() {
+				done.countDown();
+			}
+		});
+
+		done.await();
+		return received[0];
+	}
+}
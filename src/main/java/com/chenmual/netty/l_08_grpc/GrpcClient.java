@@ -2,7 +2,6 @@ package com.chenmual.netty.l_08_grpc;
 
 import com.chenmual.proto.*;
 import io.grpc.ManagedChannel;
-import io.grpc.ManagedChannelBuilder;
 import io.grpc.stub.StreamObserver;
 
 import java.time.LocalDateTime;
@@ -12,8 +11,8 @@ import java.util.concurrent.TimeUnit;
 
 public class GrpcClient {
 	public static void main(String[] args) throws InterruptedException {
-		ManagedChannel managedChannel = ManagedChannelBuilder.forAddress("localhost", 8899)
-				.usePlaintext().build();
+		//传输方式由 -Dgrpc.transport 决定 要和GrpcServer一致
+		ManagedChannel managedChannel = GrpcTransport.fromSystemProperty().channelBuilder("localhost", 8899).build();
 
 		//同步方式
 		StudentServiceGrpc.StudentServiceBlockingStub blockingStub = StudentServiceGrpc
@@ -108,6 +107,13 @@ public class GrpcClient {
 			TimeUnit.SECONDS.sleep(1);
 		}
 
+		System.out.println("--------------5------------年龄区间查询");
+		Iterator<StudentResponse> rangeIterator = blockingStub.getStudentsByAgeRange(StudentAgeRangeRequest.newBuilder().setMinAge(18).setMaxAge(25).build());
+		while(rangeIterator.hasNext()){
+			StudentResponse studentResponse = rangeIterator.next();
+			System.out.println("{" + studentResponse.getName() + "," + studentResponse.getAge() + "," + studentResponse.getCity() + "}");
+		}
+
 		Scanner s = new Scanner(System.in);
 		while(s.hasNext()){
 			String str = s.nextLine();
@@ -0,0 +1,276 @@
+package com.chenmual.netty.l_08_grpc;
+
+import com.chenmual.proto.*;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.stub.StreamObserver;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * StudentService的非交互式压测工具 (GrpcClient是交互式的 每一步都要等Scanner)
+ *
+ * concurrency个工作线程轮流调用四种RPC 请求按轮询分摊到多个ManagedChannel上
+ * 每个RPC的延迟记录到HdrHistogram 结束时输出各分位延迟和吞吐
+ *
+ * 限速时按固定间隔排定每个请求的计划开始时间 延迟从计划开始时间算起
+ * 这样服务端变慢时排队的时间也会计入延迟(避免coordinated omission)
+ *
+ * 参数通过系统属性传入:
+ *   -Dgrpc.load.host=localhost -Dgrpc.load.port=8899
+ *   -Dgrpc.transport=TCP         见GrpcTransport IN_PROCESS需要同时打开embedded
+ *   -Dgrpc.load.embedded=false   为true时在本进程中启动一个StudentServiceImpl
+ *   -Dgrpc.load.channels=4 -Dgrpc.load.concurrency=16
+ *   -Dgrpc.load.qps=0            总的目标qps 0表示不限速
+ *   -Dgrpc.load.seconds=30 -Dgrpc.load.warmupSeconds=5
+ *   -Dgrpc.load.rpcs=UNARY,SERVER_STREAMING,CLIENT_STREAMING,BIDI_STREAMING
+ *   -Dgrpc.load.deadlineMillis=5000  每个RPC的deadline 超时计入errors 一个卡住的RPC不会让工作线程一直等下去
+ */
+public class GrpcLoadGenerator {
+	enum RpcType {
+		UNARY, SERVER_STREAMING, CLIENT_STREAMING, BIDI_STREAMING
+	}
+
+	private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	private static final int[] CLIENT_STREAMING_AGES = {20, 30, 40, 50};
+
+	private static final int BIDI_MESSAGES = 10;
+
+	private final List<ManagedChannel> channels = new ArrayList<>();
+
+	private final List<StudentServiceGrpc.StudentServiceBlockingStub> blockingStubs = new ArrayList<>();
+
+	private final List<StudentServiceGrpc.StudentServiceStub> stubs = new ArrayList<>();
+
+	private final Map<RpcType, Recorder> recorders = new EnumMap<>(RpcType.class);
+
+	private final Map<RpcType, AtomicLong> errors = new EnumMap<>(RpcType.class);
+
+	private final RpcType[] rpcTypes;
+
+	private final long deadlineMillis;
+
+	public GrpcLoadGenerator(GrpcTransport transport, String host, int port, int channelCount, RpcType[] rpcTypes, long deadlineMillis) {
+		for (int i = 0; i < channelCount; i++) {
+			ManagedChannel channel = transport.channelBuilder(host, port).build();
+			channels.add(channel);
+			blockingStubs.add(StudentServiceGrpc.newBlockingStub(channel));
+			stubs.add(StudentServiceGrpc.newStub(channel));
+		}
+		for (RpcType rpcType : RpcType.values()) {
+			recorders.put(rpcType, new Recorder(HIGHEST_TRACKABLE_NANOS, 3));
+			errors.put(rpcType, new AtomicLong());
+		}
+		this.rpcTypes = rpcTypes;
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String host = System.getProperty("grpc.load.host", "localhost");
+		int port = Integer.getInteger("grpc.load.port", 8899);
+		boolean embedded = Boolean.getBoolean("grpc.load.embedded");
+		int channelCount = Integer.getInteger("grpc.load.channels", 4);
+		int concurrency = Integer.getInteger("grpc.load.concurrency", 16);
+		int qps = Integer.getInteger("grpc.load.qps", 0);
+		int seconds = Integer.getInteger("grpc.load.seconds", 30);
+		int warmupSeconds = Integer.getInteger("grpc.load.warmupSeconds", 5);
+		RpcType[] rpcTypes = parseRpcTypes(System.getProperty("grpc.load.rpcs", "UNARY,SERVER_STREAMING,CLIENT_STREAMING,BIDI_STREAMING"));
+		long deadlineMillis = Long.getLong("grpc.load.deadlineMillis", 5000);
+
+		GrpcTransport transport = GrpcTransport.fromSystemProperty();
+
+		Server server = null;
+		if (embedded) {
+			server = transport.serverBuilder(port).addService(new StudentServiceImpl()).build().start();
+			host = "localhost";
+		}
+		GrpcLoadGenerator generator = new GrpcLoadGenerator(transport, host, port, channelCount, rpcTypes, deadlineMillis);
+		try {
+			System.out.println("warmup " + warmupSeconds + "s");
+			generator.run(concurrency, qps, warmupSeconds);
+			generator.reset();
+			System.out.println("load " + seconds + "s, transport=" + transport + ", concurrency=" + concurrency + ", channels=" + channelCount + ", qps=" + (qps == 0 ? "unlimited" : qps));
+			long start = System.nanoTime();
+			generator.run(concurrency, qps, seconds);
+			generator.report(System.nanoTime() - start);
+		} finally {
+			generator.shutdown();
+			if (server != null) {
+				server.shutdownNow();
+			}
+		}
+	}
+
+	private static RpcType[] parseRpcTypes(String value) {
+		String[] names = value.split(",");
+		RpcType[] rpcTypes = new RpcType[names.length];
+		for (int i = 0; i < names.length; i++) {
+			rpcTypes[i] = RpcType.valueOf(names[i].trim());
+		}
+		return rpcTypes;
+	}
+
+	/**
+	 * 用concurrency个线程压seconds秒 qps为0时每个线程收到响应后立即发下一个请求
+	 */
+	public void run(int concurrency, int qps, int seconds) throws InterruptedException {
+		ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		//每个线程分到 qps/concurrency 的速率
+		long intervalNanos = qps == 0 ? 0 : TimeUnit.SECONDS.toNanos(1) * concurrency / qps;
+
+		for (int worker = 0; worker < concurrency; worker++) {
+			int workerIndex = worker;
+			executorService.execute(() -> {
+				long intendedStart = System.nanoTime();
+				for (long i = workerIndex; ; i++) {
+					if (intervalNanos > 0) {
+						long wait = intendedStart - System.nanoTime();
+						if (wait > 0) {
+							LockSupport.parkNanos(wait);
+						}
+					} else {
+						intendedStart = System.nanoTime();
+					}
+					if (intendedStart >= deadline) {
+						break;
+					}
+					RpcType rpcType = rpcTypes[(int) (i % rpcTypes.length)];
+					int channelIndex = (int) (i % channels.size());
+					try {
+						call(rpcType, channelIndex);
+						recorders.get(rpcType).recordValue(Math.min(System.nanoTime() - intendedStart, HIGHEST_TRACKABLE_NANOS));
+					} catch (Exception e) {
+						errors.get(rpcType).incrementAndGet();
+					}
+					intendedStart += intervalNanos;
+				}
+			});
+		}
+		executorService.shutdown();
+		executorService.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+	}
+
+	private void call(RpcType rpcType, int channelIndex) throws InterruptedException {
+		//deadline从调用开始算 每次调用都要重新设置(stub很轻 with*只是复制一份CallOptions)
+		StudentServiceGrpc.StudentServiceBlockingStub blockingStub = blockingStubs.get(channelIndex).withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS);
+		StudentServiceGrpc.StudentServiceStub stub = stubs.get(channelIndex).withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS);
+		switch (rpcType) {
+			case UNARY:
+				blockingStub.getRealNameByUserName(MyRequest.newBuilder().setUsername("张三").build());
+				break;
+			case SERVER_STREAMING:
+				Iterator<StudentResponse> iterator = blockingStub.getStudentsByAge(StudentRequest.newBuilder().setAge(20).build());
+				while (iterator.hasNext()) {
+					iterator.next();
+				}
+				break;
+			case CLIENT_STREAMING:
+				callClientStreaming(stub);
+				break;
+			case BIDI_STREAMING:
+				callBidiStreaming(stub);
+				break;
+			default:
+				throw new IllegalArgumentException(rpcType.name());
+		}
+	}
+
+	private void callClientStreaming(StudentServiceGrpc.StudentServiceStub stub) throws InterruptedException {
+		AwaitingObserver<StudentResponseList> responseObserver = new AwaitingObserver<>();
+		StreamObserver<StudentRequest> requestObserver = stub.getStudentsWrapperByAges(responseObserver);
+		for (int age : CLIENT_STREAMING_AGES) {
+			requestObserver.onNext(StudentRequest.newBuilder().setAge(age).build());
+		}
+		requestObserver.onCompleted();
+		responseObserver.await();
+	}
+
+	private void callBidiStreaming(StudentServiceGrpc.StudentServiceStub stub) throws InterruptedException {
+		AwaitingObserver<StreamResponse> responseObserver = new AwaitingObserver<>();
+		StreamObserver<StreamRequest> requestObserver = stub.biTalk(responseObserver);
+		StreamRequest request = StreamRequest.newBuilder().setRequestInfo("ping").build();
+		for (int i = 0; i < BIDI_MESSAGES; i++) {
+			requestObserver.onNext(request);
+		}
+		requestObserver.onCompleted();
+		responseObserver.await();
+	}
+
+	public void reset() {
+		for (RpcType rpcType : RpcType.values()) {
+			recorders.get(rpcType).reset();
+			errors.get(rpcType).set(0);
+		}
+	}
+
+	public void report(long elapsedNanos) {
+		double elapsedSeconds = elapsedNanos / 1e9;
+		long totalCount = 0;
+		System.out.printf("%-18s %10s %10s %10s %10s %10s %10s %10s %8s%n",
+				"rpc", "count", "rps", "p50(us)", "p90(us)", "p99(us)", "p999(us)", "max(us)", "errors");
+		for (RpcType rpcType : rpcTypes) {
+			Histogram histogram = recorders.get(rpcType).getIntervalHistogram();
+			totalCount += histogram.getTotalCount();
+			System.out.printf("%-18s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %10.1f %8d%n",
+					rpcType, histogram.getTotalCount(), histogram.getTotalCount() / elapsedSeconds,
+					histogram.getValueAtPercentile(50) / 1000.0, histogram.getValueAtPercentile(90) / 1000.0,
+					histogram.getValueAtPercentile(99) / 1000.0, histogram.getValueAtPercentile(99.9) / 1000.0,
+					histogram.getMaxValue() / 1000.0, errors.get(rpcType).get());
+		}
+		System.out.printf("total: %d rpcs in %.1f s, %.0f rps%n", totalCount, elapsedSeconds, totalCount / elapsedSeconds);
+	}
+
+	public void shutdown() throws InterruptedException {
+		for (ManagedChannel channel : channels) {
+			channel.shutdown();
+		}
+		for (ManagedChannel channel : channels) {
+			channel.awaitTermination(5, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * 等待流结束的响应observer 出错时await抛出异常 计入错误数
+	 */
+	private static class AwaitingObserver<T> implements StreamObserver<T> {
+		private final CountDownLatch done = new CountDownLatch(1);
+
+		private volatile Throwable error;
+
+		@Override
+		public void onNext(T value) {
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			error = t;
+			done.countDown();
+		}
+
+		@Override
+		public void onCompleted() {
+			done.countDown();
+		}
+
+		void await() throws InterruptedException {
+			done.await();
+			if (error != null) {
+				throw new IllegalStateException(error);
+			}
+		}
+	}
+}
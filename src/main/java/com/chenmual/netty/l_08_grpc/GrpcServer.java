@@ -2,15 +2,40 @@ package com.chenmual.netty.l_08_grpc;
 
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.netty.NettyServerBuilder;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class GrpcServer {
+	//连接最长存活时间 到期后服务端发GOAWAY 客户端重新建连 负载就能重新分摊到其他节点上
+	private static final long MAX_CONNECTION_AGE_SECONDS = Long.getLong("grpc.maxConnectionAgeSeconds", 300);
+	//GOAWAY之后给连接上正在进行的RPC留的完成时间
+	private static final long MAX_CONNECTION_AGE_GRACE_SECONDS = Long.getLong("grpc.maxConnectionAgeGraceSeconds", 30);
+	private static final long KEEP_ALIVE_TIME_SECONDS = 60;
+	private static final long KEEP_ALIVE_TIMEOUT_SECONDS = 20;
+	//客户端keepalive ping的最小间隔 比这更频繁的ping会被服务端断开
+	private static final long PERMIT_KEEP_ALIVE_TIME_SECONDS = 30;
+	//关闭时等待正在进行的RPC完成的最长时间 超时后强制关闭
+	private static final long DRAIN_TIMEOUT_SECONDS = Long.getLong("grpc.drainTimeoutSeconds", 30);
+
 	private Server server;
 	private void start() throws IOException {
-		this.server = ServerBuilder.forPort(8899)
+		//传输方式由 -Dgrpc.transport 决定 同机/同JVM的调用方可以不走回环TCP
+		GrpcTransport transport = GrpcTransport.fromSystemProperty();
+		ServerBuilder<?> serverBuilder = transport.serverBuilder(8899);
+		if (serverBuilder instanceof NettyServerBuilder) {
+			//in-process传输没有连接的概念 只有netty传输需要配置
+			((NettyServerBuilder) serverBuilder)
+					.maxConnectionAge(MAX_CONNECTION_AGE_SECONDS, TimeUnit.SECONDS)
+					.maxConnectionAgeGrace(MAX_CONNECTION_AGE_GRACE_SECONDS, TimeUnit.SECONDS)
+					.keepAliveTime(KEEP_ALIVE_TIME_SECONDS, TimeUnit.SECONDS)
+					.keepAliveTimeout(KEEP_ALIVE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+					.permitKeepAliveTime(PERMIT_KEEP_ALIVE_TIME_SECONDS, TimeUnit.SECONDS);
+		}
+		this.server = serverBuilder
 				.addService(new StudentServiceImpl()).build().start();
-		System.out.println("server started");
+		System.out.println("server started, transport: " + transport);
 
 		//在关闭JVM之前关闭grpcserver 停掉socket资源
 		Runtime.getRuntime().addShutdownHook(new Thread(() ->{
@@ -21,10 +46,28 @@ public class GrpcServer {
 		System.out.println("执行到这里");
 	}
 
+	/**
+	 * 优雅关闭:
+	 * 1. shutdown() 不再接受新的RPC 并向所有连接发GOAWAY 客户端会把新请求发到其他节点
+	 * 2. 等待正在进行的RPC完成 最多DRAIN_TIMEOUT_SECONDS秒
+	 * 3. 超时还没完成的RPC由shutdownNow()取消
+	 */
 	private void stop(){
-		if(null != this.server){
-			this.server.shutdown();
+		if(null == this.server){
+			return;
+		}
+		this.server.shutdown();
+		try {
+			if (!this.server.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				System.out.println("等待RPC完成超时 强制关闭");
+				this.server.shutdownNow();
+				this.server.awaitTermination(5, TimeUnit.SECONDS);
+			}
+		} catch (InterruptedException e) {
+			this.server.shutdownNow();
+			Thread.currentThread().interrupt();
 		}
+		System.out.println("server stopped");
 	}
 
 	private void awaitTermination() throws InterruptedException{
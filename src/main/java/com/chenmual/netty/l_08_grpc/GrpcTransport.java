@@ -0,0 +1,100 @@
+package com.chenmual.netty.l_08_grpc;
+
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.ServerBuilder;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.File;
+
+/**
+ * grpc服务端/客户端使用的传输方式 通过系统属性 -Dgrpc.transport=TCP|IN_PROCESS|DOMAIN_SOCKET 选择 默认TCP
+ *
+ * IN_PROCESS: 调用方和服务在同一个JVM里 直接在内存中传递消息 不经过socket和HTTP/2编解码
+ * DOMAIN_SOCKET: 调用方和服务在同一台机器上(比如sidecar) 走epoll的unix domain socket 省掉回环TCP协议栈
+ *   socket文件路径由 -Dgrpc.uds.path 指定 只支持linux
+ */
+public enum GrpcTransport {
+	TCP {
+		@Override
+		public ServerBuilder<?> serverBuilder(int port) {
+			//用NettyServerBuilder而不是ServerBuilder.forPort 才能设置连接寿命/keepalive等HTTP/2连接参数
+			return NettyServerBuilder.forPort(port);
+		}
+
+		@Override
+		public ManagedChannelBuilder<?> channelBuilder(String host, int port) {
+			//classpath上同时有grpc-netty和grpc-netty-shaded 两个provider优先级相同 ManagedChannelBuilder.forAddress选哪个不确定
+			//明确用和服务端同一个jar里的NettyChannelBuilder
+			return NettyChannelBuilder.forAddress(host, port).usePlaintext();
+		}
+	},
+	IN_PROCESS {
+		@Override
+		public ServerBuilder<?> serverBuilder(int port) {
+			return InProcessServerBuilder.forName(IN_PROCESS_NAME_PREFIX + port);
+		}
+
+		@Override
+		public ManagedChannelBuilder<?> channelBuilder(String host, int port) {
+			return InProcessChannelBuilder.forName(IN_PROCESS_NAME_PREFIX + port);
+		}
+	},
+	DOMAIN_SOCKET {
+		@Override
+		public ServerBuilder<?> serverBuilder(int port) {
+			//上次进程没有正常退出时残留的socket文件会导致bind失败
+			new File(domainSocketPath()).delete();
+			return NettyServerBuilder.forAddress(new DomainSocketAddress(domainSocketPath()))
+					.channelType(EpollServerDomainSocketChannel.class)
+					.bossEventLoopGroup(DomainSocketEventLoop.BOSS)
+					.workerEventLoopGroup(DomainSocketEventLoop.WORKER);
+		}
+
+		@Override
+		public ManagedChannelBuilder<?> channelBuilder(String host, int port) {
+			return NettyChannelBuilder.forAddress(new DomainSocketAddress(domainSocketPath()))
+					.channelType(EpollDomainSocketChannel.class)
+					.eventLoopGroup(DomainSocketEventLoop.WORKER)
+					.usePlaintext();
+		}
+	};
+
+	private static final String IN_PROCESS_NAME_PREFIX = "student-service-";
+
+	/**
+	 * port只用于TCP 其他传输方式用它区分同一个JVM/同一台机器上的多个服务实例
+	 */
+	public abstract ServerBuilder<?> serverBuilder(int port);
+
+	/**
+	 * host只用于TCP
+	 */
+	public abstract ManagedChannelBuilder<?> channelBuilder(String host, int port);
+
+	public static GrpcTransport fromSystemProperty() {
+		return valueOf(System.getProperty("grpc.transport", TCP.name()).trim().toUpperCase());
+	}
+
+	private static String domainSocketPath() {
+		return System.getProperty("grpc.uds.path", "/tmp/grpc-student-service.sock");
+	}
+
+	/**
+	 * epoll线程组 只有真正使用DOMAIN_SOCKET时才会加载(需要netty的native epoll库)
+	 * 守护线程 不会阻止JVM退出
+	 */
+	private static class DomainSocketEventLoop {
+		static final EventLoopGroup BOSS = new EpollEventLoopGroup(1, new DefaultThreadFactory("grpc-uds-boss", true));
+
+		static final EventLoopGroup WORKER = new EpollEventLoopGroup(0, new DefaultThreadFactory("grpc-uds-worker", true));
+	}
+}
@@ -1,56 +1,109 @@
 package com.chenmual.netty.l_08_grpc;
 
 import com.chenmual.proto.*;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
-import java.util.Scanner;
-import java.util.UUID;
+import java.util.Iterator;
 
 public class StudentServiceImpl extends StudentServiceGrpc.StudentServiceImplBase {
+	//每次调用/每条消息都打印 默认关闭: 压测(GrpcLoadGenerator)时打印会占掉大部分时间 测出来的是控制台的速度
+	//看GrpcClient演示的调用过程时用-Dgrpc.server.verbose=true打开
+	private static final boolean VERBOSE = Boolean.getBoolean("grpc.server.verbose");
+
+	private final StudentStore studentStore;
+
+	public StudentServiceImpl() {
+		this(StudentStore.sample());
+	}
+
+	public StudentServiceImpl(StudentStore studentStore) {
+		this.studentStore = studentStore;
+	}
+
 	@Override
 	public void getRealNameByUserName(MyRequest request,StreamObserver<MyResponse> responseObserver) {
-		System.out.println("接受到客户端信息1:" + request.getUsername());
+		log("接受到客户端信息1:" + request.getUsername());
 
 		responseObserver.onNext(MyResponse.newBuilder().setRealname("张三").build());
-		System.out.println("下一步");
-		Scanner s = new Scanner(System.in);
-		s.nextLine();
 		responseObserver.onCompleted();//标识响应结束
-		System.out.println("1 onCompleted完成");
+		log("1 onCompleted完成");
 	}
 
 	@Override
 	public void getStudentsByAge(StudentRequest request,StreamObserver<StudentResponse> responseObserver) {
-		System.out.println("接受到客户端信息2: " + request.getAge());
-		System.out.println("服务器准备下发onNext1 下一步");
-		new Scanner(System.in).nextLine();
-		responseObserver.onNext(StudentResponse.newBuilder().setName("张三").setAge(20).setCity("北京").build());
-		System.out.println("服务器准备下发onNext2 下一步");
-		new Scanner(System.in).nextLine();
-		responseObserver.onNext(StudentResponse.newBuilder().setName("李四").setAge(33).setCity("上海").build());
-		System.out.println("服务器准备下发onNext3 下一步");
-		new Scanner(System.in).nextLine();
-		responseObserver.onNext(StudentResponse.newBuilder().setName("abc").setAge(22).setCity("深圳").build());
-		System.out.println("服务器准备下发onNext4 下一步");
-		new Scanner(System.in).nextLine();
-		responseObserver.onNext(StudentResponse.newBuilder().setName("fds").setAge(11).setCity("成都").build());
-		System.out.println("准备下发OnCompleted 下一步");
-		new Scanner(System.in).nextLine();
-		responseObserver.onCompleted();
-		System.out.println("2 onCompleted完成");
+		log("接受到客户端信息2: " + request.getAge());
+
+		streamWithFlowControl(studentStore.findByAge(request.getAge()), responseObserver, "2");
+	}
+
+	@Override
+	public void getStudentsByAgeRange(StudentAgeRangeRequest request, StreamObserver<StudentResponse> responseObserver) {
+		log("接受到客户端信息5: [" + request.getMinAge() + ", " + request.getMaxAge() + "]");
+		streamWithFlowControl(studentStore.findByAgeRange(request.getMinAge(), request.getMaxAge()), responseObserver, "5");
+	}
+
+	private static void log(String message) {
+		if (VERBOSE) {
+			System.out.println(message);
+		}
+	}
+
+	/**
+	 * 服务端流式响应 按客户端的接收能力下发: 只有transport可写(isReady)时才onNext
+	 * 否则慢客户端会让待发送的消息堆积在服务端内存中 最终OutOfDirectMemory
+	 *
+	 * 必须在服务方法返回之前调用(setOnReadyHandler只能在这时设置)
+	 */
+	private void streamWithFlowControl(Iterator<StudentResponse> students, StreamObserver<StudentResponse> responseObserver, String tag) {
+		ServerCallStreamObserver<StudentResponse> serverCallStreamObserver = (ServerCallStreamObserver<StudentResponse>) responseObserver;
+
+		Runnable drain = new Runnable() {
+			private boolean completed = false;
+
+			@Override
+			public void run() {
+				//onReadyHandler和服务方法都在同一个call的串行executor中执行 不需要加锁
+				if (completed || serverCallStreamObserver.isCancelled()) {
+					return;
+				}
+				while (serverCallStreamObserver.isReady() && students.hasNext()) {
+					serverCallStreamObserver.onNext(students.next());
+				}
+				if (!students.hasNext()) {
+					completed = true;
+					serverCallStreamObserver.onCompleted();
+					log(tag + " onCompleted完成");
+				}
+			}
+		};
+		serverCallStreamObserver.setOnCancelHandler(() -> System.out.println(tag + " 客户端取消了调用"));
+		//transport重新变为可写时 grpc会回调onReadyHandler 继续下发剩余的数据
+		serverCallStreamObserver.setOnReadyHandler(drain);
+		//初始的onReady可能在请求到达之前就已经触发过了 这里先主动下发一次
+		drain.run();
 	}
 
 	@Override
 	public StreamObserver<StudentRequest> getStudentsWrapperByAges(StreamObserver<StudentResponseList> responseObserver) {
 
 		return new StreamObserver<StudentRequest>() {
+			//已经查询过的年龄 同一个年龄在请求流里重复出现时只查一次
+			private final boolean[] seenAges = new boolean[StudentStore.MAX_AGE + 1];
+
+			//每收到一个年龄就把命中的学生追加进来 onCompleted时只需要build
+			private final StudentResponseList.Builder builder = StudentResponseList.newBuilder();
+
 			@Override
 			public void onNext(StudentRequest value) {
-				System.out.println("onNext:" + value.getAge());
-//				System.out.println("等待下一步");
-//				Scanner s = new Scanner(System.in);
-//				s.nextLine();
-//				System.out.println("onNext 完成");
+				int age = value.getAge();
+				log("onNext:" + age);
+				if (age < 0 || age > StudentStore.MAX_AGE || seenAges[age]) {
+					return;
+				}
+				seenAges[age] = true;
+				//listByAge返回的List带有命中数 addAll会按它一次性扩容 而不是逐个add时反复扩容
+				builder.addAllStudentResponse(studentStore.listByAge(age));
 			}
 
 			@Override
@@ -60,43 +113,67 @@ public class StudentServiceImpl extends StudentServiceGrpc.StudentServiceImplBas
 
 			@Override
 			public void onCompleted() {
-				System.out.println("服务器调用onCompleted");
-				System.out.println("等待下一步");
-				Scanner s = new Scanner(System.in);
-				s.nextLine();
-				StudentResponse studentResponse1 = StudentResponse.newBuilder().setName("张三").setAge(20).setCity("北京").build();
-				StudentResponse studentResponse2 = StudentResponse.newBuilder().setName("李四").setAge(30).setCity("上海").build();
-					StudentResponseList studentResponseList = StudentResponseList.newBuilder()
-							.addStudentResponse(studentResponse1)
-							.addStudentResponse(studentResponse2)
-							.build();
-
-				responseObserver.onNext(studentResponseList);
+				log("服务器调用onCompleted");
+				responseObserver.onNext(builder.build());
 				responseObserver.onCompleted();
 
-				System.out.println("完成返回结果");
+				log("完成返回结果");
 			}
 		};
 	}
 
 	@Override
 	public StreamObserver<StreamRequest> biTalk(StreamObserver<StreamResponse> responseObserver) {
-		return new StreamObserver<StreamRequest>() {
-			@Override
-			public void onNext(StreamRequest value) {
-				System.out.println(value.getRequestInfo());
-				responseObserver.onNext(StreamResponse.newBuilder().setResponseInfo(UUID.randomUUID().toString()).build());
-			}
+		ServerCallStreamObserver<StreamResponse> serverCallStreamObserver = (ServerCallStreamObserver<StreamResponse>) responseObserver;
+		//关闭自动的request(1) 由BiTalkObserver按窗口批量request(n)
+		serverCallStreamObserver.disableAutoInboundFlowControl();
 
-			@Override
-			public void onError(Throwable t) {
-				System.out.println(t.getMessage());
-			}
+		BiTalkObserver biTalkObserver = new BiTalkObserver(serverCallStreamObserver);
+		serverCallStreamObserver.setOnReadyHandler(biTalkObserver::requestMoreIfReady);
+		return biTalkObserver;
+	}
 
-			@Override
-			public void onCompleted() {
-				responseObserver.onCompleted();
+	/**
+	 * biTalk的请求处理 手动入站流控:
+	 * 一次request一整个窗口(BI_TALK_WINDOW)的消息 收到一半之后再补齐窗口 而不是每条消息request(1)
+	 * 只有响应方向可写(isReady)时才补充窗口 客户端发得再快 服务端也只会积压一个窗口的响应
+	 *
+	 * onNext/onReadyHandler都在同一个call的串行executor中执行 字段不需要加锁
+	 */
+	private static class BiTalkObserver implements StreamObserver<StreamRequest> {
+		private static final int BI_TALK_WINDOW = 64;
+
+		private final ServerCallStreamObserver<StreamResponse> responseObserver;
+
+		//已经request但还没有收到的消息数
+		private int outstanding = 0;
+
+		BiTalkObserver(ServerCallStreamObserver<StreamResponse> responseObserver) {
+			this.responseObserver = responseObserver;
+		}
+
+		void requestMoreIfReady() {
+			if (outstanding <= BI_TALK_WINDOW / 2 && responseObserver.isReady()) {
+				responseObserver.request(BI_TALK_WINDOW - outstanding);
+				outstanding = BI_TALK_WINDOW;
 			}
-		};
+		}
+
+		@Override
+		public void onNext(StreamRequest value) {
+			outstanding--;
+			responseObserver.onNext(StreamResponse.newBuilder().setResponseInfo(ThreadLocalIdGenerator.next()).build());
+			requestMoreIfReady();
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			System.out.println(t.getMessage());
+		}
+
+		@Override
+		public void onCompleted() {
+			responseObserver.onCompleted();
+		}
 	}
 }
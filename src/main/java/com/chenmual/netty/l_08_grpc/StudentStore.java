@@ -0,0 +1,169 @@
+package com.chenmual.netty.l_08_grpc;
+
+import com.chenmual.proto.StudentResponse;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 内存中的学生存储
+ *
+ * 主键索引: id -> StudentResponse
+ * 年龄索引: 按年龄分桶 每个桶是一个int[]存放学生id 不装箱
+ * 按年龄/年龄区间查询只访问命中的桶 复杂度O(命中数) 不需要扫描全部学生
+ *
+ * 只支持追加 桶数组扩容时复制一份新数组 旧数组中已写入的位置不再修改
+ * 所以查询时在锁内拿到 (数组, 长度) 快照之后就可以在锁外遍历
+ */
+public class StudentStore {
+	public static final int MAX_AGE = 150;
+
+	private static final int INITIAL_BUCKET_CAPACITY = 8;
+
+	private final Map<Integer, StudentResponse> students = new HashMap<>();
+
+	private final int[][] ageBuckets = new int[MAX_AGE + 1][];
+
+	private final int[] ageCounts = new int[MAX_AGE + 1];
+
+	private int nextId = 1;
+
+	/**
+	 * 带几条示例数据的存储
+	 */
+	public static StudentStore sample() {
+		StudentStore store = new StudentStore();
+		store.add("张三", 20, "北京");
+		store.add("李四", 30, "上海");
+		store.add("王五", 20, "广州");
+		store.add("abc", 22, "深圳");
+		store.add("fds", 11, "成都");
+		return store;
+	}
+
+	/**
+	 * 添加一个学生 返回分配的id
+	 */
+	public synchronized int add(String name, int age, String city) {
+		checkAge(age);
+		int id = nextId++;
+		students.put(id, StudentResponse.newBuilder().setName(name).setAge(age).setCity(city).build());
+
+		int[] bucket = ageBuckets[age];
+		int count = ageCounts[age];
+		if (bucket == null) {
+			bucket = new int[INITIAL_BUCKET_CAPACITY];
+		} else if (count == bucket.length) {
+			bucket = Arrays.copyOf(bucket, count << 1);
+		}
+		bucket[count] = id;
+		ageBuckets[age] = bucket;
+		ageCounts[age] = count + 1;
+		return id;
+	}
+
+	public synchronized StudentResponse get(int id) {
+		return students.get(id);
+	}
+
+	public synchronized int size() {
+		return students.size();
+	}
+
+	public synchronized int countByAge(int age) {
+		return age < 0 || age > MAX_AGE ? 0 : ageCounts[age];
+	}
+
+	/**
+	 * 年龄等于age的学生 超出[0, MAX_AGE]的年龄没有匹配
+	 */
+	public Iterator<StudentResponse> findByAge(int age) {
+		return findByAgeRange(age, age);
+	}
+
+	/**
+	 * 年龄等于age的学生 以只读List的形式返回(桶的快照视图 不复制)
+	 * size()就是命中数 调用方可以据此一次性扩容 比如protobuf builder的addAll
+	 */
+	public synchronized List<StudentResponse> listByAge(int age) {
+		if (age < 0 || age > MAX_AGE || ageCounts[age] == 0) {
+			return Collections.emptyList();
+		}
+		int[] bucket = ageBuckets[age];
+		int count = ageCounts[age];
+		return new AbstractList<StudentResponse>() {
+			@Override
+			public StudentResponse get(int index) {
+				if (index < 0 || index >= count) {
+					throw new IndexOutOfBoundsException("index: " + index + ", size: " + count);
+				}
+				return StudentStore.this.get(bucket[index]);
+			}
+
+			@Override
+			public int size() {
+				return count;
+			}
+		};
+	}
+
+	/**
+	 * 年龄在[minAge, maxAge]之间的学生 按年龄升序 同年龄按添加顺序
+	 * 返回的迭代器是惰性的 只持有各个桶的快照
+	 */
+	public synchronized Iterator<StudentResponse> findByAgeRange(int minAge, int maxAge) {
+		int from = Math.max(minAge, 0);
+		int to = Math.min(maxAge, MAX_AGE);
+		if (from > to) {
+			return new AgeIndexIterator(new int[0][], new int[0]);
+		}
+		int[][] buckets = new int[to - from + 1][];
+		int[] counts = new int[to - from + 1];
+		for (int age = from; age <= to; age++) {
+			buckets[age - from] = ageBuckets[age];
+			counts[age - from] = ageCounts[age];
+		}
+		return new AgeIndexIterator(buckets, counts);
+	}
+
+	private static void checkAge(int age) {
+		if (age < 0 || age > MAX_AGE) {
+			throw new IllegalArgumentException("age must be in [0, " + MAX_AGE + "]: " + age);
+		}
+	}
+
+	private class AgeIndexIterator implements Iterator<StudentResponse> {
+		private final int[][] buckets;
+		private final int[] counts;
+		private int bucketIndex = 0;
+		private int position = 0;
+
+		AgeIndexIterator(int[][] buckets, int[] counts) {
+			this.buckets = buckets;
+			this.counts = counts;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (bucketIndex < buckets.length && position >= counts[bucketIndex]) {
+				bucketIndex++;
+				position = 0;
+			}
+			return bucketIndex < buckets.length;
+		}
+
+		@Override
+		public StudentResponse next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return get(buckets[bucketIndex][position++]);
+		}
+	}
+}
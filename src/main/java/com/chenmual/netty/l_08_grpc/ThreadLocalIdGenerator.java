@@ -0,0 +1,33 @@
+package com.chenmual.netty.l_08_grpc;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 轻量的唯一id生成器 用来代替UUID.randomUUID()
+ *
+ * UUID.randomUUID()每次都要走SecureRandom(有锁 可能阻塞)并分配UUID对象
+ * 这里每个线程在第一次使用时分配一个全局唯一的线程编号 之后只在本线程内递增计数器
+ * id = 线程编号(16进制) + "-" + 计数器(16进制) 在当前JVM内唯一 不需要任何同步
+ */
+public final class ThreadLocalIdGenerator {
+	private static final AtomicInteger THREAD_SEQUENCE = new AtomicInteger();
+
+	private static final ThreadLocal<Counter> COUNTER = ThreadLocal.withInitial(Counter::new);
+
+	private ThreadLocalIdGenerator() {
+	}
+
+	public static String next() {
+		return COUNTER.get().next();
+	}
+
+	private static final class Counter {
+		private final String prefix = Integer.toHexString(THREAD_SEQUENCE.incrementAndGet()) + "-";
+
+		private long value = 0;
+
+		String next() {
+			return prefix + Long.toHexString(++value);
+		}
+	}
+}
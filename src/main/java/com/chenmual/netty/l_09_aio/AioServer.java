@@ -2,14 +2,21 @@ package com.chenmual.netty.l_09_aio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.CompletionHandler;
-import java.util.Date;
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import io.netty.util.CharsetUtil;
+import com.chenmual.netty.l_09_nio.ByteBufferPool;
 
 /**
  * 对于AIO模式，其是在jdk 1.7中加入的，主要原因是NIO模式代码编写非常复杂，并且容易出错。 AIO本质上还是使用的NIO的多路复用来实现的，
@@ -17,22 +24,44 @@ import io.netty.util.CharsetUtil;
  *
  * 在AIO中，所有的操作都是异步执行的，而每个事件都是通过一个回调函数来进行的， 这里也就是一个 {@link CompletionHandler} 对象。
  *
+ * 用法: AioServer [线程数]  线程数默认CPU核数 监听8080 收到什么回写什么(echo)
+ *
+ * 原来的写法每个连接只读一次 读完new byte[]/String 回写之后就不再读了
+ * 现在:
+ *   所有回调在一个固定大小线程池的AsynchronousChannelGroup上执行 线程数可控 不用默认的cached线程池
+ *   每个连接 读 -> 处理 -> 写 -> 读 一直循环 直到对方关闭
+ *   buffer从共享的direct池中取: 读满的buffer直接交给写队列(不复制) 再从池里取一个新的继续读 写完归还
+ *   同一个channel上同时只能有一个未完成的write(否则WritePendingException) 所以写先进队列 上一次写完成后再发下一批
+ *   写队列积压超过HIGH_WATER_MARK时暂停读 降到LOW_WATER_MARK以下再恢复 对方不读时服务端内存不会无限增长
+ *
  * @author LiuXianfa
  * @email xianfaliu@newbanker.cn
  * @date 2020/2/28 16:29
  */
 public class AioServer {
 
+    static final ByteBufferPool BUFFER_POOL = new ByteBufferPool(true);
+
+    private static final ReadCompletionHandler READ_HANDLER = new ReadCompletionHandler();
+
+    private static final WriteCompletionHandler WRITE_HANDLER = new WriteCompletionHandler();
 
     public static void main(String[] args) throws IOException, InterruptedException {
-        CountDownLatch latch = new CountDownLatch(1);
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        AsynchronousChannelGroup group = AsynchronousChannelGroup.withFixedThreadPool(threads, namedThreadFactory("aio-"));
 
         // 创建一个异步的ServerSocketChannel，然后绑定8080端口，并且处理其accept事件
-        AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open();
-        server.bind(new InetSocketAddress(8080));
+        AsynchronousServerSocketChannel server = AsynchronousServerSocketChannel.open(group);
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(new InetSocketAddress(8080), 1024);
         server.accept(server, new AcceptCompletionHandler());
 
-        latch.await();
+        group.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> new Thread(runnable, prefix + index.getAndIncrement());
     }
 
     /**
@@ -44,74 +73,218 @@ public class AioServer {
             // 在处理了一个accept事件之后，继续递归监听下一个accept事件
             server.accept(server, this);
 
-
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
-            channel.read(buffer, buffer, new ReadCompletionHandler(channel));
+            try {
+                //和BioEchoServer/NettyEchoServer一样关掉Nagle TransportBenchmark比较延迟时条件相同
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            new Connection(channel).read();
         }
 
         @Override
-        public void failed(Throwable exc, AsynchronousServerSocketChannel attachment) {
+        public void failed(Throwable exc, AsynchronousServerSocketChannel server) {
             exc.printStackTrace();
+            // accept失败(比如文件句柄用完)不能就此停止接收新连接
+            if (server.isOpen()) {
+                server.accept(server, this);
+            }
         }
     }
 
-    static class ReadCompletionHandler implements CompletionHandler<Integer, ByteBuffer> {
+    /**
+     * 一个连接的状态 作为attachment传给读写回调 回调本身是无状态的单例 不需要每次读写new一个
+     *
+     * 一个连接同一时刻最多一个未完成的read和一个未完成的write 但读回调和写回调可能在group的不同线程上同时执行
+     * 所以写队列相关的状态都在this锁内修改 发起异步操作放在锁外
+     */
+    static class Connection {
+        private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+        private static final long HIGH_WATER_MARK = 1024 * 1024;
 
-        private AsynchronousSocketChannel channel;
+        private static final long LOW_WATER_MARK = HIGH_WATER_MARK / 2;
 
-        public ReadCompletionHandler(AsynchronousSocketChannel channel) {
+        //一次gathering write最多带几个buffer
+        private static final int MAX_GATHER = 16;
+
+        private final AsynchronousSocketChannel channel;
+
+        //当前未完成的read用的buffer
+        private ByteBuffer readBuffer;
+
+        private final Deque<ByteBuffer> writeQueue = new ArrayDeque<>();
+
+        //当前未完成的gathering write 写完之前这些buffer仍留在writeQueue的头部
+        private ByteBuffer[] inFlight;
+
+        private long pendingBytes = 0;
+
+        private boolean readSuspended = false;
+
+        private boolean closed = false;
+
+        Connection(AsynchronousSocketChannel channel) {
             this.channel = channel;
         }
 
-        @Override
-        public void completed(Integer result, ByteBuffer readBuffer) {
-            readBuffer.flip();
-            byte[] body = new byte[readBuffer.remaining()];
-            readBuffer.get(body);  // 读取客户端发送的数据
-            try {
-                System.out.println("Server receives message: " + new String(body, CharsetUtil.UTF_8));
+        /**
+         * 发起下一次读 写队列积压太多时先暂停 由写完成回调恢复
+         */
+        void read() {
+            ByteBuffer buffer;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (pendingBytes > HIGH_WATER_MARK) {
+                    readSuspended = true;
+                    return;
+                }
+                buffer = BUFFER_POOL.acquire(READ_BUFFER_SIZE);
+                readBuffer = buffer;
+            }
+            channel.read(buffer, this, READ_HANDLER);
+        }
 
-                ByteBuffer writeBuffer = ByteBuffer.wrap(("Hello, I'm server. It's: " + new Date()).getBytes());
-                // 异步的写入服务端的数据，这里也是通过一个CompletionHandler来异步的写入数据
-                channel.write(writeBuffer, writeBuffer, new WriteCompletionHandler(channel));
-            } catch (Exception e) {
-                e.printStackTrace();
+        /**
+         * 处理读到的数据 这里是echo: 读到的buffer原样交给写队列
+         */
+        void process(ByteBuffer data) {
+            write(data);
+        }
+
+        /**
+         * 可以在任意线程调用 调用之后buffer归写队列所有 写完还给BUFFER_POOL
+         */
+        void write(ByteBuffer buffer) {
+            ByteBuffer[] batch;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                writeQueue.addLast(buffer);
+                pendingBytes += buffer.remaining();
+                if (inFlight != null) {
+                    //已经有一个write没完成 等它完成时一起发
+                    return;
+                }
+                batch = nextBatch();
             }
+            startWrite(batch);
         }
 
+        private void writeCompleted(long written) {
+            ByteBuffer[] batch;
+            boolean resumeRead = false;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                pendingBytes -= written;
+                while (!writeQueue.isEmpty() && !writeQueue.peekFirst().hasRemaining()) {
+                    BUFFER_POOL.release(writeQueue.pollFirst());
+                }
+                batch = nextBatch();
+                if (readSuspended && pendingBytes <= LOW_WATER_MARK) {
+                    readSuspended = false;
+                    resumeRead = true;
+                }
+            }
+            if (batch != null) {
+                startWrite(batch);
+            }
+            if (resumeRead) {
+                read();
+            }
+        }
 
-        @Override
-        public void failed(Throwable exc, ByteBuffer attachment) {
+        /**
+         * 取写队列头部最多MAX_GATHER个buffer作为下一次write 队列空时返回null
+         */
+        private ByteBuffer[] nextBatch() {
+            if (writeQueue.isEmpty()) {
+                inFlight = null;
+                return null;
+            }
+            ByteBuffer[] batch = new ByteBuffer[Math.min(writeQueue.size(), MAX_GATHER)];
+            Iterator<ByteBuffer> iterator = writeQueue.iterator();
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = iterator.next();
+            }
+            inFlight = batch;
+            return batch;
+        }
+
+        private void startWrite(ByteBuffer[] batch) {
+            // 超时参数为0表示不超时
+            channel.write(batch, 0, batch.length, 0L, TimeUnit.MILLISECONDS, this, WRITE_HANDLER);
+        }
+
+        /**
+         * 关闭时不把buffer还给池: 被关闭打断的异步读写可能还在使用它们 交给GC
+         */
+        void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                writeQueue.clear();
+                inFlight = null;
+                readBuffer = null;
+                pendingBytes = 0;
+            }
             try {
                 channel.close();
             } catch (IOException e) {
-                e.printStackTrace();
+                // ignore
             }
         }
     }
 
-    static class WriteCompletionHandler implements CompletionHandler<Integer, ByteBuffer> {
-        private AsynchronousSocketChannel channel;
+    static class ReadCompletionHandler implements CompletionHandler<Integer, Connection> {
 
-        public WriteCompletionHandler(AsynchronousSocketChannel channel) {
-            this.channel = channel;
+        @Override
+        public void completed(Integer result, Connection connection) {
+            ByteBuffer data;
+            synchronized (connection) {
+                data = connection.readBuffer;
+                connection.readBuffer = null;
+            }
+            if (result < 0 || data == null) {
+                // 对方关闭了连接
+                connection.close();
+                return;
+            }
+            data.flip();
+            connection.process(data);
+            connection.read();
         }
 
+
         @Override
-        public void completed(Integer result, ByteBuffer writeBuffer) {
-            if (writeBuffer.hasRemaining()) {
-                // 将数据写入到服务器channel中
-                channel.write(writeBuffer, writeBuffer, this);
+        public void failed(Throwable exc, Connection connection) {
+            if (!(exc instanceof AsynchronousCloseException)) {
+                exc.printStackTrace();
             }
+            connection.close();
+        }
+    }
+
+    static class WriteCompletionHandler implements CompletionHandler<Long, Connection> {
+
+        @Override
+        public void completed(Long written, Connection connection) {
+            connection.writeCompleted(written);
         }
 
         @Override
-        public void failed(Throwable exc, ByteBuffer attachment) {
-            try {
-                channel.close();
-            } catch (IOException e) {
-                // ignore
+        public void failed(Throwable exc, Connection connection) {
+            if (!(exc instanceof AsynchronousCloseException)) {
+                exc.printStackTrace();
             }
+            connection.close();
         }
     }
 
@@ -0,0 +1,48 @@
+package com.chenmual.netty.l_09_benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * 传统的serversocket回显服务器: 和l_11_zerocopy.OldServer一样 每个连接一个线程阻塞读
+ * OldServer只收不回 压测要测往返延迟 所以这里读到什么写回什么
+ *
+ * 用法: BioEchoServer [端口]  默认8899
+ */
+public class BioEchoServer {
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8899;
+		ServerSocket serverSocket = new ServerSocket();
+		serverSocket.bind(new InetSocketAddress(port), 1024);
+		while (true) {
+			Socket socket = serverSocket.accept();//阻塞等待链接
+			Thread thread = new Thread(() -> echo(socket), "bio-" + socket.getPort());
+			thread.start();
+		}
+	}
+
+	private static void echo(Socket socket) {
+		try {
+			socket.setTcpNoDelay(true);
+			InputStream inputStream = socket.getInputStream();
+			OutputStream outputStream = socket.getOutputStream();
+			byte[] byteArray = new byte[4096];
+			int len;
+			while ((len = inputStream.read(byteArray, 0, byteArray.length)) != -1) {
+				outputStream.write(byteArray, 0, len);
+			}
+		} catch (IOException e) {
+			//对方断开 连接结束
+		} finally {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,242 @@
+package com.chenmual.netty.l_09_benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * 所有被测服务器共用的回显压测客户端
+ *
+ * connections个连接平均分到threads个selector线程上(1万个连接不需要1万个客户端线程)
+ * 每个连接是闭环的: 发一条messageSize字节的消息 收齐同样多字节的回显之后记录往返延迟 立即发下一条
+ * 所以同一时刻每个连接上最多一条消息 吞吐 = 连接数 / 平均往返延迟
+ * 延迟从发出时刻算起 服务端卡顿期间没有发出的消息不计入(闭环压测的coordinated omission 连接数大时影响小)
+ */
+public class EchoLoadClient {
+	private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+	private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+	private final LongAdder completed = new LongAdder();
+
+	private final List<IoLoop> loops = new ArrayList<>();
+
+	private final byte[] message;
+
+	public EchoLoadClient(int messageSize, int threads) throws IOException {
+		message = new byte[messageSize];
+		for (int i = 0; i < messageSize; i++) {
+			message[i] = (byte) ('a' + i % 26);
+		}
+		for (int i = 0; i < threads; i++) {
+			loops.add(new IoLoop("echo-client-" + i));
+		}
+	}
+
+	/**
+	 * 依次建立connections个连接 阻塞connect 建好之后交给各个selector线程 连接一建好就开始收发
+	 */
+	public void connect(InetSocketAddress address, int connections) throws IOException {
+		for (IoLoop loop : loops) {
+			loop.start();
+		}
+		for (int i = 0; i < connections; i++) {
+			SocketChannel channel = SocketChannel.open();
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.connect(address);
+			channel.configureBlocking(false);
+			loops.get(i % loops.size()).add(new Connection(channel, message));
+		}
+	}
+
+	/**
+	 * 丢弃到目前为止的统计 之后的measure从这里开始算
+	 */
+	public void reset() {
+		recorder.reset();
+		completed.reset();
+	}
+
+	/**
+	 * 等待seconds秒 返回这段时间内完成的往返次数和延迟分布
+	 */
+	public Result measure(int seconds) throws InterruptedException {
+		reset();
+		long start = System.nanoTime();
+		TimeUnit.SECONDS.sleep(seconds);
+		Histogram histogram = recorder.getIntervalHistogram();
+		long count = completed.sum();
+		return new Result(count, System.nanoTime() - start, histogram);
+	}
+
+	public void close() throws InterruptedException {
+		for (IoLoop loop : loops) {
+			loop.shutdown();
+		}
+		for (IoLoop loop : loops) {
+			loop.join();
+		}
+	}
+
+	public static class Result {
+		final long count;
+
+		final long elapsedNanos;
+
+		final Histogram histogram;
+
+		Result(long count, long elapsedNanos, Histogram histogram) {
+			this.count = count;
+			this.elapsedNanos = elapsedNanos;
+			this.histogram = histogram;
+		}
+
+		public double throughput() {
+			return count / (elapsedNanos / 1e9);
+		}
+
+		public double percentileMicros(double percentile) {
+			return histogram.getValueAtPercentile(percentile) / 1000.0;
+		}
+	}
+
+	/**
+	 * 每个连接的收发状态 只在所属IoLoop线程中访问
+	 */
+	private static class Connection {
+		final SocketChannel channel;
+
+		//发送用的buffer包着共享的message数组 每次发之前rewind 不复制
+		final ByteBuffer out;
+
+		final ByteBuffer in;
+
+		long sentAt;
+
+		Connection(SocketChannel channel, byte[] message) {
+			this.channel = channel;
+			this.out = ByteBuffer.wrap(message);
+			this.in = ByteBuffer.allocateDirect(message.length);
+		}
+	}
+
+	private class IoLoop extends Thread {
+		private final Selector selector;
+
+		private final List<Connection> pending = new ArrayList<>();
+
+		private volatile boolean running = true;
+
+		IoLoop(String name) throws IOException {
+			super(name);
+			setDaemon(true);
+			selector = Selector.open();
+		}
+
+		void add(Connection connection) {
+			synchronized (pending) {
+				pending.add(connection);
+			}
+			selector.wakeup();
+		}
+
+		void shutdown() {
+			running = false;
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					selector.select(100);
+					registerPending();
+					Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+					while (iterator.hasNext()) {
+						SelectionKey key = iterator.next();
+						iterator.remove();
+						try {
+							if (key.isValid() && key.isWritable()) {
+								write(key);
+							}
+							if (key.isValid() && key.isReadable()) {
+								read(key);
+							}
+						} catch (IOException e) {
+							//服务端关闭了连接 不再统计这个连接
+							key.cancel();
+							try {
+								key.channel().close();
+							} catch (IOException closeException) {
+								//只影响这一个连接 IoLoop线程继续处理其他连接
+								closeException.printStackTrace();
+							}
+						}
+					}
+				}
+				for (SelectionKey key : selector.keys()) {
+					key.channel().close();
+				}
+				selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		private void registerPending() throws IOException {
+			List<Connection> connections;
+			synchronized (pending) {
+				if (pending.isEmpty()) {
+					return;
+				}
+				connections = new ArrayList<>(pending);
+				pending.clear();
+			}
+			for (Connection connection : connections) {
+				SelectionKey key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+				send(key);
+			}
+		}
+
+		private void send(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+			connection.out.rewind();
+			connection.sentAt = System.nanoTime();
+			write(key);
+		}
+
+		private void write(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+			connection.channel.write(connection.out);
+			//消息很小 几乎总能一次写完 写不完时才关注OP_WRITE
+			key.interestOps(connection.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+
+		private void read(SelectionKey key) throws IOException {
+			Connection connection = (Connection) key.attachment();
+			if (connection.channel.read(connection.in) < 0) {
+				throw new IOException("closed by server");
+			}
+			if (connection.in.hasRemaining()) {
+				//回显可能分几次到达
+				return;
+			}
+			recorder.recordValue(Math.min(System.nanoTime() - connection.sentAt, HIGHEST_TRACKABLE_NANOS));
+			completed.increment();
+			connection.in.clear();
+			send(key);
+		}
+	}
+}
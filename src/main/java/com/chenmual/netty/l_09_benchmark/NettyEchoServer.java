@@ -0,0 +1,70 @@
+package com.chenmual.netty.l_09_benchmark;
+
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+
+/**
+ * 和l_02_withclient.MyServer同样的boss/worker结构 pipeline里只有一个回显handler
+ * l_02的handler每条消息都打印并回一个新的UUID 测的是println 不是传输层 所以压测用这个
+ *
+ * 用法: NettyEchoServer [端口]  默认8899
+ */
+public class NettyEchoServer {
+	public static void main(String[] args) throws InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 8899;
+		EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+		EventLoopGroup workerGroup = new NioEventLoopGroup();
+		try {
+			ServerBootstrap serverBootstrap = new ServerBootstrap();
+			ByteBufAllocatorConfig.configure(serverBootstrap);
+			serverBootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
+					.option(ChannelOption.SO_BACKLOG, 1024)
+					.childOption(ChannelOption.TCP_NODELAY, true)
+					.childHandler(new ChannelInitializer<SocketChannel>() {
+						@Override
+						protected void initChannel(SocketChannel ch) {
+							ch.pipeline().addLast(EchoHandler.INSTANCE);
+						}
+					});
+
+			ChannelFuture channelFuture = serverBootstrap.bind(port).sync();
+			channelFuture.channel().closeFuture().sync();
+		} finally {
+			bossGroup.shutdownGracefully();
+			workerGroup.shutdownGracefully();
+		}
+	}
+
+	/**
+	 * 收到的ByteBuf原样写回 一次读事件中读到的所有数据在channelReadComplete时一起flush
+	 */
+	@ChannelHandler.Sharable
+	static class EchoHandler extends ChannelInboundHandlerAdapter {
+		static final EchoHandler INSTANCE = new EchoHandler();
+
+		@Override
+		public void channelRead(ChannelHandlerContext ctx, Object msg) {
+			ctx.write(msg);
+		}
+
+		@Override
+		public void channelReadComplete(ChannelHandlerContext ctx) {
+			ctx.flush();
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+			ctx.close();
+		}
+	}
+}
@@ -0,0 +1,25 @@
+package com.chenmual.netty.l_09_benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * 在子进程中启动被测服务器: 先打印本进程pid 再调用目标类的main
+ * JDK8的Process没有pid() TransportBenchmark从第一行输出中拿到pid 之后读/proc/pid/status统计线程数和RSS
+ *
+ * 用法: ServerLauncher 主类名 [主类参数...]
+ */
+public class ServerLauncher {
+	static final String PID_PREFIX = "pid=";
+
+	public static void main(String[] args) throws Exception {
+		//RuntimeMXBean的名字是 pid@主机名
+		String name = ManagementFactory.getRuntimeMXBean().getName();
+		System.out.println(PID_PREFIX + name.substring(0, name.indexOf('@')));
+		System.out.flush();
+
+		Class.forName(args[0])
+				.getMethod("main", String[].class)
+				.invoke(null, (Object) Arrays.copyOfRange(args, 1, args.length));
+	}
+}
@@ -0,0 +1,219 @@
+package com.chenmual.netty.l_09_benchmark;
+
+import com.chenmual.netty.l_09_aio.AioServer;
+import com.chenmual.netty.l_09_nio.NioTest12;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一台机器上(loopback)对比四种传输实现的回显性能: BIO / NIO / AIO / Netty
+ *
+ * 每个(实现, 连接数)组合都新起一个服务端JVM(通过ServerLauncher) 保证线程数和内存互不影响
+ * 客户端是本进程中的EchoLoadClient 所有实现用同一个客户端 同样的消息大小
+ * 每组先预热 再统计: 吞吐(往返/秒) p50/p99/p999延迟 服务端进程的线程数和RSS(读/proc 只支持Linux)
+ *
+ * 被测的服务端:
+ *   BIO            BioEchoServer     每连接一个线程 (l_11_zerocopy.OldServer的模型)
+ *   NIO            NioTest12         一个端口一个selector线程
+ *   NIO_REUSEPORT  NioTest12         SO_REUSEPORT 每个核一个selector线程
+ *   AIO            AioServer         固定线程池的AsynchronousChannelGroup
+ *   NETTY          NettyEchoServer   l_02_withclient.MyServer的boss/worker结构
+ * NioServer是群聊(广播给所有人) 连接数多时是O(n^2)的写 和回显不可比 不在其中
+ *
+ * 参数通过系统属性传入:
+ *   -Dbench.targets=BIO,NIO,NIO_REUSEPORT,AIO,NETTY
+ *   -Dbench.connections=1,100,10000
+ *   -Dbench.messageSize=64
+ *   -Dbench.warmupSeconds=5 -Dbench.seconds=10
+ *   -Dbench.clientThreads=CPU核数
+ *   -Dbench.serverJvmArgs=      传给服务端JVM的参数 空格分隔 比如 -Xmx1g
+ * 1万连接时客户端和服务端各需要1万多个文件句柄 先确认ulimit -n
+ */
+public class TransportBenchmark {
+	enum Target {
+		BIO(BioEchoServer.class, 9001, new String[0], "9001"),
+		NIO(NioTest12.class, 9002, new String[0], "9002"),
+		NIO_REUSEPORT(NioTest12.class, 9003, new String[]{"-Dnio.reusePort=true"}, "9003"),
+		AIO(AioServer.class, 8080, new String[0]),
+		NETTY(NettyEchoServer.class, 9004, new String[0], "9004");
+
+		final Class<?> mainClass;
+
+		final int port;
+
+		final String[] jvmArgs;
+
+		final String[] args;
+
+		Target(Class<?> mainClass, int port, String[] jvmArgs, String... args) {
+			this.mainClass = mainClass;
+			this.port = port;
+			this.jvmArgs = jvmArgs;
+			this.args = args;
+		}
+	}
+
+	private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+	public static void main(String[] args) throws Exception {
+		String[] targetNames = System.getProperty("bench.targets", "BIO,NIO,NIO_REUSEPORT,AIO,NETTY").split(",");
+		int[] connectionCounts = Arrays.stream(System.getProperty("bench.connections", "1,100,10000").split(","))
+				.mapToInt(value -> Integer.parseInt(value.trim())).toArray();
+		int messageSize = Integer.getInteger("bench.messageSize", 64);
+		int warmupSeconds = Integer.getInteger("bench.warmupSeconds", 5);
+		int seconds = Integer.getInteger("bench.seconds", 10);
+		int clientThreads = Integer.getInteger("bench.clientThreads", Runtime.getRuntime().availableProcessors());
+		String serverJvmArgs = System.getProperty("bench.serverJvmArgs", "").trim();
+
+		System.out.println("messageSize=" + messageSize + ", warmup=" + warmupSeconds + "s, measure=" + seconds + "s, clientThreads=" + clientThreads);
+		System.out.printf("%-14s %8s %12s %10s %10s %10s %8s %10s%n",
+				"target", "conns", "rtt/s", "p50(us)", "p99(us)", "p999(us)", "threads", "rss(MB)");
+		for (String targetName : targetNames) {
+			Target target = Target.valueOf(targetName.trim());
+			for (int connections : connectionCounts) {
+				try {
+					run(target, connections, messageSize, warmupSeconds, seconds, clientThreads, serverJvmArgs);
+				} catch (Exception e) {
+					//某一组失败(比如句柄不够) 不影响其他组
+					System.out.printf("%-14s %8d failed: %s%n", target, connections, e);
+				}
+			}
+		}
+	}
+
+	private static void run(Target target, int connections, int messageSize, int warmupSeconds, int seconds,
+							int clientThreads, String serverJvmArgs) throws Exception {
+		ServerProcess server = ServerProcess.start(target, serverJvmArgs);
+		EchoLoadClient client = new EchoLoadClient(messageSize, clientThreads);
+		try {
+			client.connect(new InetSocketAddress("127.0.0.1", target.port), connections);
+			TimeUnit.SECONDS.sleep(warmupSeconds);
+			EchoLoadClient.Result result = client.measure(seconds);
+			//在连接还开着的时候采样 BIO的每连接线程这时都还在
+			long threads = server.status("Threads:");
+			long rssKb = server.status("VmRSS:");
+			System.out.printf("%-14s %8d %12.0f %10.1f %10.1f %10.1f %8s %10s%n",
+					target, connections, result.throughput(),
+					result.percentileMicros(50), result.percentileMicros(99), result.percentileMicros(99.9),
+					threads < 0 ? "-" : String.valueOf(threads), rssKb < 0 ? "-" : String.valueOf(rssKb / 1024));
+		} finally {
+			//客户端先关 TIME_WAIT留在客户端一侧 下一组可以立即重新bind同一个端口
+			client.close();
+			server.stop();
+		}
+	}
+
+	/**
+	 * 子进程中的被测服务端
+	 */
+	private static class ServerProcess {
+		private final Process process;
+
+		private final long pid;
+
+		private ServerProcess(Process process, long pid) {
+			this.process = process;
+			this.pid = pid;
+		}
+
+		static ServerProcess start(Target target, String serverJvmArgs) throws IOException, InterruptedException {
+			List<String> command = new ArrayList<>();
+			command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+			if (!serverJvmArgs.isEmpty()) {
+				command.addAll(Arrays.asList(serverJvmArgs.split("\\s+")));
+			}
+			command.addAll(Arrays.asList(target.jvmArgs));
+			command.add("-cp");
+			command.add(System.getProperty("java.class.path"));
+			command.add(ServerLauncher.class.getName());
+			command.add(target.mainClass.getName());
+			command.addAll(Arrays.asList(target.args));
+
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+			String firstLine = reader.readLine();
+			if (firstLine == null || !firstLine.startsWith(ServerLauncher.PID_PREFIX)) {
+				process.destroyForcibly();
+				throw new IOException(target + " failed to start: " + firstLine);
+			}
+			long pid = Long.parseLong(firstLine.substring(ServerLauncher.PID_PREFIX.length()));
+			drain(reader, target.name());
+
+			ServerProcess server = new ServerProcess(process, pid);
+			server.awaitListening(target.port);
+			return server;
+		}
+
+		/**
+		 * 服务端每个连接都可能打印一行 不读走的话管道写满 服务端会阻塞在println上
+		 */
+		private static void drain(BufferedReader reader, String name) {
+			Thread thread = new Thread(() -> {
+				try {
+					while (reader.readLine() != null) {
+						//丢弃
+					}
+				} catch (IOException e) {
+					//进程已退出
+				}
+			}, "drain-" + name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void awaitListening(int port) throws IOException, InterruptedException {
+			long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+			while (true) {
+				try (Socket socket = new Socket()) {
+					socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+					return;
+				} catch (IOException e) {
+					if (!process.isAlive() || System.currentTimeMillis() > deadline) {
+						stop();
+						throw new IOException("server not listening on " + port, e);
+					}
+					TimeUnit.MILLISECONDS.sleep(100);
+				}
+			}
+		}
+
+		/**
+		 * 读/proc/pid/status中的一项(Threads:的值是个数 VmRSS:的值单位是kB) 不支持时返回-1
+		 */
+		long status(String field) {
+			File file = new File("/proc/" + pid + "/status");
+			if (!file.exists()) {
+				return -1;
+			}
+			try {
+				for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+					if (line.startsWith(field)) {
+						return Long.parseLong(line.substring(field.length()).trim().split("\\s+")[0]);
+					}
+				}
+			} catch (IOException | NumberFormatException e) {
+				e.printStackTrace();
+			}
+			return -1;
+		}
+
+		void stop() throws InterruptedException {
+			process.destroy();
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroyForcibly().waitFor();
+			}
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.chenmual.netty.l_09_nio;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按容量分级的ByteBuffer池 线程安全 可以被多个reactor线程共享
+ *
+ * 容量按2的幂分级: 64B, 128B, ... , 1MB 申请时向上取到所在级别 用完release回对应级别的空闲队列
+ * 超过最大级别的申请直接分配 release时丢弃
+ * 每一级最多缓存MAX_CACHED_PER_CLASS个空闲buffer 多出来的交给GC
+ */
+public class ByteBufferPool {
+    private static final int MIN_SHIFT = 6;
+
+    private static final int MAX_SHIFT = 20;
+
+    private static final int MAX_CACHED_PER_CLASS = 256;
+
+    private final boolean direct;
+
+    private final Queue<ByteBuffer>[] freeLists;
+
+    private final AtomicInteger[] freeCounts;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ByteBufferPool(boolean direct) {
+        this.direct = direct;
+        int classCount = MAX_SHIFT - MIN_SHIFT + 1;
+        this.freeLists = new Queue[classCount];
+        this.freeCounts = new AtomicInteger[classCount];
+        for (int i = 0; i < classCount; i++) {
+            freeLists[i] = new ConcurrentLinkedQueue<>();
+            freeCounts[i] = new AtomicInteger();
+        }
+    }
+
+    public static int maxPooledCapacity() {
+        return 1 << MAX_SHIFT;
+    }
+
+    /**
+     * 返回一个position=0 limit=size的buffer capacity可能比size大
+     */
+    public ByteBuffer acquire(int size) {
+        int sizeClass = sizeClass(size);
+        if (sizeClass < 0) {
+            return allocate(size);
+        }
+        ByteBuffer buffer = freeLists[sizeClass].poll();
+        if (buffer == null) {
+            buffer = allocate(1 << (sizeClass + MIN_SHIFT));
+        } else {
+            freeCounts[sizeClass].decrementAndGet();
+        }
+        buffer.clear().limit(size);
+        return buffer;
+    }
+
+    /**
+     * 归还acquire得到的buffer 归还之后调用方不能再使用它
+     */
+    public void release(ByteBuffer buffer) {
+        //只接收本池分配出去的规格: 同样是否direct 容量是某一级的大小
+        if (buffer.isDirect() != direct || buffer.capacity() < (1 << MIN_SHIFT) || Integer.bitCount(buffer.capacity()) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass < 0 || freeCounts[sizeClass].incrementAndGet() > MAX_CACHED_PER_CLASS) {
+            if (sizeClass >= 0) {
+                freeCounts[sizeClass].decrementAndGet();
+            }
+            return;
+        }
+        freeLists[sizeClass].offer(buffer);
+    }
+
+    /**
+     * size所在的级别 超过最大级别返回-1
+     */
+    private static int sizeClass(int size) {
+        if (size > (1 << MAX_SHIFT)) {
+            return -1;
+        }
+        int shift = size <= (1 << MIN_SHIFT) ? MIN_SHIFT : 32 - Integer.numberOfLeadingZeros(size - 1);
+        return shift - MIN_SHIFT;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+}
@@ -0,0 +1,168 @@
+package com.chenmual.netty.l_09_nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 【4字节长度 + 数据】格式的帧解码器 每个连接一个 (解码状态跟着连接走 不能多个连接共用)
+ *
+ * Zk_ClientCnxnSocketNIOReadLengthMethodQuestion中的疑问: zk读完长度之后只分配了buffer 要等下一次select才读数据
+ * 这里读完长度之后在同一次唤醒里继续解析: 一次read读到的数据里有几个完整的帧就回调几次
+ * 并且一直读到socket里没有数据为止(最多MAX_READS_PER_WAKEUP次 避免一个连接占住reactor线程)
+ *
+ * 帧完整地落在readBuffer里时 直接把readBuffer的一段slice交给handler 不复制
+ * 帧跨越了多次read时 从ByteBufferPool按帧长取一个buffer拼装 回调结束后归还
+ *   拼装期间用scattering read: socket中的数据先直接读进帧的buffer 帧读满后多出来的(下一帧的长度等)再进readBuffer
+ *   大帧的数据不再经过readBuffer中转复制
+ * 所以handler拿到的frame只在回调期间有效 需要保留的话自己复制
+ */
+public class FrameDecoder {
+    public interface FrameHandler {
+        void onFrame(NioConnection connection, ByteBuffer frame) throws IOException;
+    }
+
+    private static final int LENGTH_FIELD_SIZE = 4;
+
+    private static final int MAX_READS_PER_WAKEUP = 16;
+
+    private final ByteBufferPool bufferPool;
+
+    private final int maxFrameLength;
+
+    //长度字段本身也可能被拆到两次read里
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_FIELD_SIZE);
+
+    //-1表示正在读长度
+    private int frameLength = -1;
+
+    //跨越多次read的帧 从池中取的拼装buffer
+    private ByteBuffer body;
+
+    //scattering read用的数组 {body, readBuffer} 复用 不每次分配
+    private final ByteBuffer[] scatter = new ByteBuffer[2];
+
+    public FrameDecoder(ByteBufferPool bufferPool, int maxFrameLength) {
+        this.bufferPool = bufferPool;
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    /**
+     * 从连接上读数据并解码 返回读到的字节数 对方关闭连接时返回-1
+     */
+    public long readFrom(NioConnection connection, FrameHandler handler) throws IOException {
+        SocketChannel channel = connection.channel();
+        ByteBuffer readBuffer = connection.readBuffer();
+        long total = 0;
+        for (int i = 0; i < MAX_READS_PER_WAKEUP; i++) {
+            readBuffer.clear();
+            long count;
+            if (body != null) {
+                scatter[0] = body;
+                scatter[1] = readBuffer;
+                count = channel.read(scatter);
+                scatter[0] = null;
+                scatter[1] = null;
+                if (count > 0 && !body.hasRemaining()) {
+                    completeBody(connection, handler);
+                }
+            } else {
+                count = channel.read(readBuffer);
+            }
+            if (count < 0) {
+                return total == 0 ? -1 : total;
+            }
+            if (count == 0) {
+                break;
+            }
+            total += count;
+            readBuffer.flip();
+            decode(connection, readBuffer, handler);
+            if (readBuffer.limit() < readBuffer.capacity()) {
+                //没有读满 socket里暂时没有数据了 不必再试一次read
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 解析in中的全部数据 完整的帧回调handler 不完整的部分保存在解码器中等下一次数据
+     */
+    public void decode(NioConnection connection, ByteBuffer in, FrameHandler handler) throws IOException {
+        while (in.hasRemaining()) {
+            if (frameLength < 0) {
+                if (!readLength(in)) {
+                    return;
+                }
+            }
+            if (body == null && in.remaining() >= frameLength) {
+                //整个帧都在in里 直接切一段给handler
+                int end = in.position() + frameLength;
+                ByteBuffer frame = in.slice();
+                frame.limit(frameLength);
+                in.position(end);
+                frameLength = -1;
+                handler.onFrame(connection, frame);
+                continue;
+            }
+            if (body == null) {
+                body = bufferPool.acquire(frameLength);
+            }
+            copy(in, body);
+            if (!body.hasRemaining()) {
+                completeBody(connection, handler);
+            }
+        }
+    }
+
+    /**
+     * 连接关闭时调用 把还没拼完的buffer还给池
+     */
+    public void release() {
+        if (body != null) {
+            bufferPool.release(body);
+            body = null;
+        }
+        frameLength = -1;
+        lengthBuffer.clear();
+    }
+
+    private boolean readLength(ByteBuffer in) throws IOException {
+        if (lengthBuffer.position() == 0 && in.remaining() >= LENGTH_FIELD_SIZE) {
+            frameLength = in.getInt();
+        } else {
+            copy(in, lengthBuffer);
+            if (lengthBuffer.hasRemaining()) {
+                return false;
+            }
+            lengthBuffer.flip();
+            frameLength = lengthBuffer.getInt();
+            lengthBuffer.clear();
+        }
+        if (frameLength < 0 || frameLength > maxFrameLength) {
+            throw new IOException("illegal frame length: " + frameLength + ", max: " + maxFrameLength);
+        }
+        return true;
+    }
+
+    private void completeBody(NioConnection connection, FrameHandler handler) throws IOException {
+        ByteBuffer frame = body;
+        body = null;
+        frameLength = -1;
+        frame.flip();
+        try {
+            handler.onFrame(connection, frame);
+        } finally {
+            bufferPool.release(frame);
+        }
+    }
+
+    private static void copy(ByteBuffer from, ByteBuffer to) {
+        int n = Math.min(from.remaining(), to.remaining());
+        int limit = from.limit();
+        from.limit(from.position() + n);
+        to.put(from);
+        from.limit(limit);
+    }
+}
@@ -0,0 +1,48 @@
+package com.chenmual.netty.l_09_nio;
+
+import java.util.Arrays;
+
+/**
+ * 群聊的在线连接表
+ *
+ * 成员保存在一个copy-on-write数组里: 加入/退出时复制一份新数组(连接建立和断开相对少)
+ * 广播时直接拿当前数组的快照遍历 不加锁 不创建迭代器 多个worker线程可以同时广播
+ * 发送方的id挂在自己的NioConnection上 收到消息时不需要在表里反查
+ */
+public class NioClientRegistry {
+    private static final NioConnection[] EMPTY = new NioConnection[0];
+
+    private volatile NioConnection[] members = EMPTY;
+
+    public synchronized void add(NioConnection connection) {
+        NioConnection[] current = members;
+        NioConnection[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = connection;
+        members = updated;
+    }
+
+    public synchronized boolean remove(NioConnection connection) {
+        NioConnection[] current = members;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == connection) {
+                NioConnection[] updated = new NioConnection[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                members = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 当前成员的快照 调用方只能读 不能修改数组
+     */
+    public NioConnection[] members() {
+        return members;
+    }
+
+    public int size() {
+        return members.length;
+    }
+}
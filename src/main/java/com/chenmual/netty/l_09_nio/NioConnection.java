@@ -0,0 +1,282 @@
+package com.chenmual.netty.l_09_nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * 每个连接的状态 作为attachment挂在SelectionKey上
+ *
+ * readBuffer: 复用的direct buffer 每次读之前clear 不再每条消息allocate一次
+ * outbound: 待发送队列 每一项是一帧(比如 头 + 数据 + 尾 几个独立的buffer) 用一次gathering write发出 不拼接复制
+ *   socket发送缓冲区满时(write只写出一部分)剩下的数据留在队列里
+ *   只有队列非空时才关注OP_WRITE 可写时由reactor线程调用flush()继续写
+ *   队列空了就取消OP_WRITE 否则socket一直可写 selector会空转
+ *
+ * write()可以在任意线程调用(比如群聊时其他worker线程广播过来)
+ *   注册之后 其他线程的write作为任务交给所属reactor执行 队列和interestOps只在reactor线程上修改
+ *   调用线程不碰socket 也不用为了让OP_WRITE生效而wakeup selector(reactor的任务队列会合并wakeup)
+ *
+ * id: 连接的标识 直接挂在连接(也就是SelectionKey的attachment)上 收到消息时不需要再反查
+ * context: 协议相关的每连接状态 比如FrameDecoder 只在所属reactor线程中访问
+ */
+public class NioConnection {
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    //待发送的数据超过这个值说明对方读得太慢 直接断开 不让队列无限增长
+    private static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+
+    private final String id;
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    private final Deque<ByteBuffer[]> outbound = new ArrayDeque<>();
+
+    private long pendingBytes = 0;
+
+    private SelectionKey selectionKey;
+
+    private volatile NioReactor reactor;
+
+    private Consumer<NioConnection> closeListener;
+
+    private Object context;
+
+    private volatile boolean closed = false;
+
+    //发送队列积压时暂停读 队列写空后恢复
+    private boolean readPaused = false;
+
+    public NioConnection(String id, SocketChannel channel) {
+        this.id = id;
+        this.channel = channel;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public SocketChannel channel() {
+        return channel;
+    }
+
+    /**
+     * 连接关闭时回调一次 在close()的调用线程上执行
+     */
+    public synchronized void setCloseListener(Consumer<NioConnection> closeListener) {
+        this.closeListener = closeListener;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T context() {
+        return (T) context;
+    }
+
+    public void setContext(Object context) {
+        this.context = context;
+    }
+
+    /**
+     * 只能在所属reactor的线程中使用
+     */
+    public ByteBuffer readBuffer() {
+        return readBuffer;
+    }
+
+    /**
+     * 注册到selector之后由reactor线程调用 注册之前已经有待发送数据的话 补上OP_WRITE
+     */
+    synchronized void attach(SelectionKey selectionKey, NioReactor reactor) {
+        this.selectionKey = selectionKey;
+        this.reactor = reactor;
+        if (!outbound.isEmpty()) {
+            interestWrite(true);
+        }
+    }
+
+    /**
+     * 发送一帧 frame中的各个buffer按顺序发送(position到limit之间的数据) 调用之后这些buffer归连接所有 调用方不能再修改
+     * 队列为空时直接写socket 写不完的部分排队等OP_WRITE
+     * 不在所属reactor线程上调用时 交给reactor线程执行 写失败时由reactor线程关闭连接
+     * 注册(attach)之前调用时只排队 不写socket attach时补上OP_WRITE 由reactor线程发出
+     */
+    public void write(ByteBuffer... frame) throws IOException {
+        NioReactor owner = reactor;
+        if (owner == null || owner.inEventLoop()) {
+            writeNow(frame);
+            return;
+        }
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        owner.execute(() -> {
+            try {
+                writeNow(frame);
+            } catch (IOException e) {
+                close();
+            }
+        });
+    }
+
+    private synchronized void writeNow(ByteBuffer... frame) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        long frameBytes = 0;
+        int nonEmpty = 0;
+        for (ByteBuffer buffer : frame) {
+            frameBytes += buffer.remaining();
+            if (buffer.hasRemaining()) {
+                nonEmpty++;
+            }
+        }
+        if (nonEmpty == 0) {
+            return;
+        }
+        if (nonEmpty < frame.length) {
+            //空的buffer(比如长度为0的body)不进队列
+            frame = withoutEmpty(frame, nonEmpty);
+        }
+        if (pendingBytes + frameBytes > MAX_PENDING_BYTES) {
+            close();
+            throw new IOException("too many pending bytes, closed slow connection: " + channel);
+        }
+        boolean wasEmpty = outbound.isEmpty();
+        outbound.addLast(frame);
+        pendingBytes += frameBytes;
+        //队列原来不空 说明已经在等OP_WRITE了 按顺序排在后面即可
+        if (wasEmpty && selectionKey != null) {
+            if (reactor.inEventLoop()) {
+                flush();
+            } else {
+                //write()看到还没注册 进到这里之前reactor线程刚好attach了 flush会在reactor线程之外改interestOps
+                //这里只打开OP_WRITE(会wakeup selector) 由reactor线程flush
+                interestWrite(true);
+            }
+        }
+    }
+
+    /**
+     * 发送调用方会复用的buffer(比如readBuffer): 队列为空时直接从它写socket
+     * 只有写不完的剩余部分才复制一份排队 调用返回后buffer可以立即复用 只能在所属reactor线程中调用
+     */
+    public synchronized void writeTransient(ByteBuffer buffer) throws IOException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+        if (outbound.isEmpty() && selectionKey != null) {
+            channel.write(buffer);
+            if (!buffer.hasRemaining()) {
+                return;
+            }
+        }
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer).flip();
+        writeNow(copy);
+    }
+
+    public synchronized boolean hasPendingWrites() {
+        return !outbound.isEmpty();
+    }
+
+    /**
+     * 发送队列非空时停止关注OP_READ 等队列写空后(flush中)自动恢复
+     * 用于回显这类"读多少就写多少"的场景: 对方不读 我们也不再读它 数据就留在内核缓冲区里 不在用户态堆积
+     */
+    public synchronized void pauseReadWhilePending() {
+        if (outbound.isEmpty() || readPaused || selectionKey == null || !selectionKey.isValid()) {
+            return;
+        }
+        readPaused = true;
+        selectionKey.interestOps(selectionKey.interestOps() & ~SelectionKey.OP_READ);
+    }
+
+    /**
+     * 尽量把队列中的数据写出去 reactor线程收到OP_WRITE时调用
+     */
+    public synchronized void flush() throws IOException {
+        ByteBuffer[] head;
+        while ((head = outbound.peekFirst()) != null) {
+            //gathering write: 一帧的头/数据/尾一次系统调用写出
+            long written = head.length == 1 ? channel.write(head[0]) : channel.write(head);
+            pendingBytes -= written;
+            if (hasRemaining(head)) {
+                //socket发送缓冲区满了 等下一次可写
+                interestWrite(true);
+                return;
+            }
+            outbound.pollFirst();
+        }
+        interestWrite(false);
+        if (readPaused && selectionKey.isValid()) {
+            readPaused = false;
+            selectionKey.interestOps(selectionKey.interestOps() | SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * 一帧里任何一个buffer还有数据就是没写完 只看最后一个的话 最后一个为空时前面没写完的也会被当成写完了
+     */
+    private static boolean hasRemaining(ByteBuffer[] frame) {
+        for (ByteBuffer buffer : frame) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ByteBuffer[] withoutEmpty(ByteBuffer[] frame, int nonEmpty) {
+        ByteBuffer[] result = new ByteBuffer[nonEmpty];
+        int i = 0;
+        for (ByteBuffer buffer : frame) {
+            if (buffer.hasRemaining()) {
+                result[i++] = buffer;
+            }
+        }
+        return result;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        outbound.clear();
+        pendingBytes = 0;
+        if (closeListener != null) {
+            closeListener.accept(this);
+        }
+        if (selectionKey != null) {
+            NioReactor.cancelAndClose(selectionKey);
+        } else {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void interestWrite(boolean enable) {
+        if (selectionKey == null || !selectionKey.isValid()) {
+            return;
+        }
+        int ops = selectionKey.interestOps();
+        int newOps = enable ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE;
+        if (ops != newOps) {
+            selectionKey.interestOps(newOps);
+            if (enable && !reactor.inEventLoop()) {
+                //只有注册前后交界处的write会走到这里 唤醒所属selector让新的关注事件生效
+                selectionKey.selector().wakeup();
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.chenmual.netty.l_09_nio;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一个Selector + 一个专属线程 负责若干个已经建立好的连接上的读写事件
+ *
+ * 多reactor模式下: acceptor线程只负责accept 然后通过register()把连接交给某个worker reactor
+ * 之后这个连接上的所有读写都在这个reactor的线程上执行
+ * 每个连接的SelectionKey上挂着一个NioConnection 可写事件由NioConnection.flush()处理
+ *
+ * 也可以通过listen()让reactor自己监听端口: accept到的连接直接注册在同一个selector上
+ * 多个reactor各自监听(不同端口 或者SO_REUSEPORT的同一个端口)时 由内核把连接分散到各个reactor
+ *
+ * 其他线程通过execute()把任务交给reactor线程执行(注册连接 跨线程写数据)
+ *   wakeup()是一次系统调用 只有reactor线程阻塞在select()时才需要
+ *   awake: reactor线程阻塞之前置为false 之后第一个入队的线程把它改回true并wakeup 其余入队的线程不再wakeup
+ * 可选的busy-poll(-Dnio.busyPollMicros=N): 阻塞之前先用selectNow()自旋最多N微秒
+ *   这段时间内到达的事件和任务不需要经过 wakeup -> 线程调度 尾延迟更低 代价是自旋期间占满一个核
+ */
+public class NioReactor implements Runnable {
+    public interface ReadHandler {
+        void read(SelectionKey selectionKey) throws IOException;
+    }
+
+    public interface AcceptHandler {
+        /**
+         * 为新连接(已经是非阻塞模式)创建NioConnection 由本reactor注册
+         * 返回null表示连接已经交给了其他reactor
+         */
+        NioConnection accept(SocketChannel channel) throws IOException;
+    }
+
+    private static final long BUSY_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(Long.getLong("nio.busyPollMicros", 0));
+
+    //每轮最多执行的任务数 任务太多时不饿死IO事件
+    private static final int MAX_TASKS_PER_LOOP = 1024;
+
+    private final String name;
+
+    private final Selector selector;
+
+    private final ReadHandler readHandler;
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    //reactor线程没有阻塞在select()中时为true
+    private final AtomicBoolean awake = new AtomicBoolean(true);
+
+    private volatile Thread thread;
+
+    public NioReactor(String name, ReadHandler readHandler) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+        this.readHandler = readHandler;
+    }
+
+    public void start() {
+        new Thread(this, name).start();
+    }
+
+    /**
+     * 在本reactor的selector上监听serverChannel 必须在start()/run()之前调用
+     */
+    public void listen(ServerSocketChannel serverChannel, AcceptHandler acceptHandler) throws IOException {
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT, acceptHandler);
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * 可以在任意线程调用 task在reactor线程上按入队顺序执行
+     */
+    public void execute(Runnable task) {
+        tasks.offer(task);
+        if (!inEventLoop() && awake.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * 可以在任意线程调用
+     *
+     * 不能直接在调用线程里channel.register(selector): 本reactor的线程阻塞在select()时 register会一直阻塞
+     * 所以作为任务交给reactor线程自己完成注册
+     */
+    public void register(NioConnection connection) {
+        execute(() -> {
+            try {
+                registerNow(connection);
+            } catch (IOException e) {
+                e.printStackTrace();
+                connection.close();
+            }
+        });
+    }
+
+    private void registerNow(NioConnection connection) throws IOException {
+        SelectionKey selectionKey = connection.channel().register(selector, SelectionKey.OP_READ, connection);
+        connection.attach(selectionKey, this);
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        while (true) {
+            try {
+                if (busyPoll() == 0 && tasks.isEmpty()) {
+                    awake.set(false);
+                    //置false之后再检查一次: 在这之前入队的任务这里能看到 在这之后入队的线程会负责wakeup
+                    if (tasks.isEmpty()) {
+                        selector.select();
+                    } else {
+                        selector.selectNow();
+                    }
+                    awake.set(true);
+                }
+
+                processSelectedKeys();
+                runTasks();
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 没有开启busy-poll时直接返回0 否则在BUSY_POLL_NANOS内反复selectNow() 直到有就绪事件或者有任务
+     */
+    private int busyPoll() throws IOException {
+        if (BUSY_POLL_NANOS <= 0) {
+            return 0;
+        }
+        long deadline = System.nanoTime() + BUSY_POLL_NANOS;
+        do {
+            int selected = selector.selectNow();
+            if (selected > 0 || !tasks.isEmpty()) {
+                return selected;
+            }
+        } while (System.nanoTime() < deadline);
+        return 0;
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey selectionKey = iterator.next();
+            iterator.remove();
+            if (!selectionKey.isValid()) {
+                continue;
+            }
+            if (selectionKey.isAcceptable()) {
+                accept(selectionKey);
+                continue;
+            }
+            try {
+                handle(selectionKey);
+            } catch (IOException e) {
+                //单个连接出错只关闭这个连接 不影响reactor上的其他连接
+                e.printStackTrace();
+                close(selectionKey);
+            }
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        for (int i = 0; i < MAX_TASKS_PER_LOOP && (task = tasks.poll()) != null; i++) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 处理一个已经建立好的连接上的就绪事件 先写后读: 先把积压的数据发出去
+     */
+    private void handle(SelectionKey selectionKey) throws IOException {
+        if (selectionKey.isWritable()) {
+            ((NioConnection) selectionKey.attachment()).flush();
+        }
+        if (selectionKey.isValid() && selectionKey.isReadable()) {
+            readHandler.read(selectionKey);
+        }
+    }
+
+    /**
+     * accept失败(比如文件句柄用完)只打印 不能关闭监听的channel
+     */
+    private void accept(SelectionKey selectionKey) {
+        ServerSocketChannel serverChannel = (ServerSocketChannel) selectionKey.channel();
+        AcceptHandler acceptHandler = (AcceptHandler) selectionKey.attachment();
+        SocketChannel channel = null;
+        try {
+            channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            NioConnection connection = acceptHandler.accept(channel);
+            if (connection != null) {
+                registerNow(connection);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+        }
+    }
+
+    /**
+     * 关闭key对应的连接 挂着NioConnection时走NioConnection.close() 以便通知关闭监听(比如从注册表中移除)
+     */
+    static void close(SelectionKey selectionKey) {
+        Object attachment = selectionKey.attachment();
+        if (attachment instanceof NioConnection) {
+            ((NioConnection) attachment).close();
+        } else {
+            cancelAndClose(selectionKey);
+        }
+    }
+
+    static void cancelAndClose(SelectionKey selectionKey) {
+        selectionKey.cancel();
+        closeQuietly(selectionKey.channel());
+    }
+
+    private static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -5,95 +5,102 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
 
+/**
+ * 群聊服务器
+ *
+ * 用法: NioServer [worker数]
+ *   worker数为0: 单reactor 一个selector线程同时负责accept和read(原来的写法)
+ *   worker数大于0(默认CPU核数): 多reactor 主selector只负责accept 连接轮询分配给N个worker selector
+ *   每个worker selector由一个专属线程驱动 吞吐随核数扩展
+ */
 public class NioServer {
-    private static Map<String, SocketChannel> clientMap = new HashMap<>();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
+    //所有在线连接 加入/退出由accept线程和关闭连接的线程修改 广播时各worker线程并发读
+    private static NioClientRegistry clients = new NioClientRegistry();
 
-    public static void main(String[] args) throws IOException {
-        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
-        serverSocketChannel.configureBlocking(false);
-        ServerSocket serverSocket = serverSocketChannel.socket();
-        serverSocket.bind(new InetSocketAddress(8899));
+    private static NioReactor[] workers = new NioReactor[0];
 
-        //创建selector 把serverSocketChannel注册到上 关注accept事件
-        Selector selector = Selector.open();//server负责链接的channel
-        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+    private static int nextWorker = 0;
 
-        while (true) {
-            try {
-                selector.select();
-                //当获取事件时 把关注的keys返回
-                Set<SelectionKey> selectionKeys = selector.selectedKeys();
 
-                selectionKeys.forEach(selectionKey -> {
-                    try {
-                        if (selectionKey.isAcceptable()) {
-                            accept(selector, selectionKey);
-                        } else if (selectionKey.isReadable()) {
-                            read(selectionKey);
-                        }
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                    }
-                });
-                //处理完之后清空
-                selectionKeys.clear();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    public static void main(String[] args) throws IOException {
+        int workerCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        workers = new NioReactor[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new NioReactor("nio-worker-" + i, NioServer::read);
+            workers[i].start();
         }
-    }
 
-    private static void accept(Selector selector, SelectionKey selectionKey) throws IOException {
-        SocketChannel client;//在哪个channel上触发的acceptable
-        ServerSocketChannel server = (ServerSocketChannel) selectionKey.channel();
-        client = server.accept();//client负责读数据的channel
+        ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+        ServerSocket serverSocket = serverSocketChannel.socket();
+        serverSocket.bind(new InetSocketAddress(8899));
 
-        client.configureBlocking(false);
-        client.register(selector, SelectionKey.OP_READ);
+        //主reactor负责accept 没有worker时也负责所有连接的读写 直接在main线程上运行
+        NioReactor boss = new NioReactor("nio-boss", NioServer::read);
+        boss.listen(serverSocketChannel, NioServer::accept);
+        boss.run();
+    }
 
+    private static NioConnection accept(SocketChannel client) throws IOException {
         String key = "[" + UUID.randomUUID().toString() + "]";
-        clientMap.put(key, client);
+        NioConnection connection = new NioConnection(key, client);
+        //广播时的消息头"[id], " 每个连接只编码一次
+        connection.setContext((key + ", ").getBytes(UTF_8));
+        //不管连接是怎么关闭的(对方断开/读写出错/发送队列积压) 都从在线列表中移除
+        connection.setCloseListener(clients::remove);
+        clients.add(connection);
+
+        if (workers.length == 0) {
+            //注册在主reactor上
+            return connection;
+        }
+        //只有accept线程访问nextWorker 不需要同步
+        workers[nextWorker].register(connection);
+        nextWorker = (nextWorker + 1) % workers.length;
+        return null;
     }
 
     private static void read(SelectionKey selectionKey) throws IOException {
-        SocketChannel client;
-        client = (SocketChannel) selectionKey.channel();
-        ByteBuffer readBuffer = ByteBuffer.allocate(1024);
+        NioConnection connection = (NioConnection) selectionKey.attachment();
+        SocketChannel client = connection.channel();
+        //复用连接上的direct buffer
+        ByteBuffer readBuffer = connection.readBuffer();
+        readBuffer.clear();
         int count = client.read(readBuffer);
 
+        if (count < 0) {
+            //客户端关闭了连接 不处理的话这个key会一直可读 selector空转
+            connection.close();
+            return;
+        }
         if (count > 0) {
             readBuffer.flip();
-            Charset charset = Charset.forName("UTF-8");
-            String recievedMessage = String.valueOf(charset.decode(readBuffer).array());
-
-            System.out.println(client + ": " + recievedMessage);
-            String senderKey = null;
-            for (Map.Entry<String, SocketChannel> entry : clientMap.entrySet()) {
-                if (client == entry.getValue()) {
-                    senderKey = entry.getKey();
-                    break;
+            //readBuffer会被下一次read复用 消息体复制一份 之后所有接收方共用
+            byte[] body = new byte[readBuffer.remaining()];
+            readBuffer.get(body);
+
+            System.out.println(client + ": " + new String(body, UTF_8));
+            //发送方的id(消息头)就在attachment上 不需要遍历查找
+            byte[] header = connection.context();
+
+            //头和消息体是两个独立的buffer 用一次gathering write发出 不拼接成一个大数组
+            //每个接收方拿到的是同一个数组上的独立视图(position/limit各自独立)
+            for (NioConnection member : clients.members()) {
+                try {
+                    //接收方在其他worker上时 write只是把任务放进它的队列 不在本线程写socket
+                    //写不完的部分留在接收方的发送队列里 等OP_WRITE继续写 不会丢数据
+                    member.write(ByteBuffer.wrap(header), ByteBuffer.wrap(body));
+                } catch (IOException e) {
+                    //写失败的是接收方 不能影响发送方的连接
+                    member.close();
                 }
             }
-
-            for (Map.Entry<String, SocketChannel> entry : clientMap.entrySet()) {
-                SocketChannel socketChannel = entry.getValue();
-                ByteBuffer writeBuffer = ByteBuffer.allocate(1024);
-                writeBuffer.put((senderKey + ", " + recievedMessage).getBytes());
-
-                writeBuffer.flip();
-
-                socketChannel.write(writeBuffer);
-            }
         }
     }
 }
@@ -2,89 +2,108 @@ package com.chenmual.netty.l_09_nio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.channels.spi.SelectorProvider;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
+/**
+ * 多端口回显服务器 也是测量内核到用户态开销的底层echo基准目标
+ *
+ * 每个监听端口有自己的selector和线程(NioReactor) accept和读写都在这个线程上完成 线程之间没有共享状态
+ *   NioTest12 [端口...]                        默认监听 5000 5001 5002 5003 5004
+ * 打开SO_REUSEPORT时 同一个端口由N个reactor各自bind一次 由内核把新连接分散到各个reactor
+ *   -Dnio.reusePort=true -Dnio.listeners=N    N默认CPU核数 只监听第一个端口
+ *
+ * 回显直接从连接上复用的direct readBuffer写回 不再每次循环allocate
+ * 写不完(对方读得慢)时剩余部分进入发送队列 并暂停读这个连接 队列写空后再恢复
+ */
 public class NioTest12 {
+	//一次唤醒中一个连接最多读几次 避免一个连接占住线程
+	private static final int MAX_READS_PER_WAKEUP = 16;
+
 	public static void main(String[] args) throws IOException {
-	    int[] ports = new int[]{
-	    	5000, 5001, 5002, 5003, 5004
+		int[] ports = new int[]{
+				5000, 5001, 5002, 5003, 5004
 		};
-
-		Selector selector = Selector.open();
-//		System.out.println(SelectorProvider.provider().getClass());
-		for(int i = 0;i < ports.length; i++){
-			ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
-			serverSocketChannel.configureBlocking(false);//设置非阻塞
-
-			ServerSocket serverSocket = serverSocketChannel.socket();
-			InetSocketAddress address = new InetSocketAddress(ports[i]);
-			serverSocket.bind(address);
-
-			int key = SelectionKey.OP_ACCEPT;//注册感兴趣的key
-			SelectionKey selectionKey = serverSocketChannel.register(selector, key);
-			//每当selector注册到channel上都会创建key
-			//key的生命周期持续到cancel方法调用/channel.close/selector.close
-
-			System.out.println("监听端口: " + ports[i]);
+		if (args.length > 0) {
+			ports = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				ports[i] = Integer.parseInt(args[i]);
+			}
 		}
 
-		while(true) {
-			int keyCount = selector.select();
-			System.out.println("number" + keyCount);
-
-			Set<SelectionKey> selectionKeys = selector.selectedKeys();//selector监听多个通道所以返回一个集合
-
-			System.out.println("selectorKeys:" + selectionKeys);
-			Iterator<SelectionKey> iterator = selectionKeys.iterator();
+		if (Boolean.getBoolean("nio.reusePort")) {
+			int listeners = Integer.getInteger("nio.listeners", Runtime.getRuntime().availableProcessors());
+			for (int i = 0; i < listeners; i++) {
+				listen("echo-" + ports[0] + "-" + i, ports[0], true);
+			}
+			System.out.println("监听端口: " + ports[0] + " (SO_REUSEPORT x " + listeners + ")");
+		} else {
+			for (int port : ports) {
+				listen("echo-" + port, port, false);
+				System.out.println("监听端口: " + port);
+			}
+		}
+	}
 
-			while(iterator.hasNext()) {
-				SelectionKey selectionKey = iterator.next();
-				if(selectionKey.isAcceptable()){
-					//完成链接
-					ServerSocketChannel serverSocketChannel = (ServerSocketChannel) selectionKey.channel();
-					SocketChannel socketChannel = serverSocketChannel.accept();
-					socketChannel.configureBlocking(false);
+	private static void listen(String name, int port, boolean reusePort) throws IOException {
+		ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+		if (reusePort) {
+			SocketOption<Boolean> option = reusePortOption(serverSocketChannel);
+			if (option == null) {
+				throw new UnsupportedOperationException("SO_REUSEPORT is not supported on this platform/JDK");
+			}
+			serverSocketChannel.setOption(option, true);
+		}
+		serverSocketChannel.bind(new InetSocketAddress(port), 1024);
 
-					socketChannel.register(selector, SelectionKey.OP_READ);//监听read事件
-					iterator.remove();//并把原先监听的事件移除
+		NioReactor reactor = new NioReactor(name, NioTest12::echo);
+		reactor.listen(serverSocketChannel, NioTest12::accept);
+		reactor.start();
+	}
 
-					System.out.println("获得客户端链接:  " + socketChannel);
-				}else if(selectionKey.isReadable()){
-					//完成数据读取
-					SocketChannel socketChannel = (SocketChannel) selectionKey.channel();
-					int byteRead = 0;
-					while(true){
-						ByteBuffer byteBuffer = ByteBuffer.allocate(512);
-						byteBuffer.clear();
+	/**
+	 * SO_REUSEPORT从JDK9开始才有StandardSocketOptions常量 按名字查找 在JDK8上返回null
+	 */
+	@SuppressWarnings("unchecked")
+	private static SocketOption<Boolean> reusePortOption(ServerSocketChannel serverSocketChannel) {
+		for (SocketOption<?> option : serverSocketChannel.supportedOptions()) {
+			if ("SO_REUSEPORT".equals(option.name())) {
+				return (SocketOption<Boolean>) option;
+			}
+		}
+		return null;
+	}
 
-						int read = socketChannel.read(byteBuffer);
-						if(read <= 0){
-							break;
-						}
-						byteBuffer.flip();
-						socketChannel.write(byteBuffer);
+	private static NioConnection accept(SocketChannel socketChannel) throws IOException {
+		//和BioEchoServer/NettyEchoServer一样关掉Nagle TransportBenchmark比较延迟时条件相同
+		socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		return new NioConnection(socketChannel.getRemoteAddress().toString(), socketChannel);
+	}
 
-						byteRead += read;
-					}
-					System.out.println("读取:" + byteRead + ", 来自于:" + socketChannel);
-					iterator.remove();//处理完的key需要remove
-				}else{
-					try {
-						TimeUnit.SECONDS.sleep(5);
-					} catch(InterruptedException e) {
-						e.printStackTrace();
-					}
-					System.out.println("null");
-				}
+	private static void echo(SelectionKey selectionKey) throws IOException {
+		NioConnection connection = (NioConnection) selectionKey.attachment();
+		SocketChannel socketChannel = connection.channel();
+		ByteBuffer readBuffer = connection.readBuffer();
+		for (int i = 0; i < MAX_READS_PER_WAKEUP; i++) {
+			readBuffer.clear();
+			int read = socketChannel.read(readBuffer);
+			if (read < 0) {
+				connection.close();
+				return;
+			}
+			if (read == 0) {
+				return;
+			}
+			readBuffer.flip();
+			connection.writeTransient(readBuffer);
+			if (connection.hasPendingWrites()) {
+				//对方没有及时读走回显的数据 先不读它了
+				connection.pauseReadWhilePending();
+				return;
 			}
 		}
 	}
@@ -30,81 +30,60 @@ public class Zk_ClientCnxnSocketNIOReadLengthMethodQuestion {
 
     private static final int server_port = 8080;
 
+    /**
+     * 对上面疑问的回答: readLength()之后不是一定要等下一次select
+     * 这里每个连接有自己的FrameDecoder(原来的lengthBuffer/incomingBuffer是static的 所有客户端共用 会互相串数据)
+     * 读完长度之后在同一次唤醒中继续解析 一次读到多个帧就连续回调多次 拼装跨read的帧用的buffer从池里取
+     */
     static class Server {
-        private static ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
-        private static ByteBuffer incomingBuffer = lengthBuffer;
-        private static int packetLength = -1;
+        private static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+        private static final ByteBufferPool BUFFER_POOL = new ByteBufferPool(false);
+
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
 
         public static void main(String[] args) throws IOException {
-            Selector selector = Selector.open();
             ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
-            serverSocketChannel.configureBlocking(false);
             // 注意：服务端暴露端口，是使用serverSocket#bind方法。
             ServerSocket serverSocket = serverSocketChannel.socket();
             serverSocket.bind(new InetSocketAddress(server_port));
 
-            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
-
-
-            while (true) {
-                selector.select(1000); // select是阻塞的。设置一个超时时间，超时之后仍然没有接收关心的事件，就不再等待。
-                Set<SelectionKey> selectionKeys = selector.selectedKeys();
-                for (SelectionKey selectionKey : selectionKeys) {
-                    if (selectionKey.isAcceptable()) {
-                        ServerSocketChannel channel = (ServerSocketChannel) selectionKey.channel();
-                        SocketChannel clientSocket = channel.accept();
-                        clientSocket.configureBlocking(false);
+            // 原来是select(1000)超时轮询 现在由NioReactor驱动: 没有事件时一直阻塞 其他线程要做事(比如回写)时通过任务队列唤醒
+            NioReactor reactor = new NioReactor("zk-server", Server::read);
+            reactor.listen(serverSocketChannel, Server::accept);
+            reactor.run();
+        }
 
-                        clientSocket.register(selector, SelectionKey.OP_READ, clientSocket);
-                    } else if (selectionKey.isReadable()) {
-                        SocketChannel clientSocket = (SocketChannel) selectionKey.attachment();
+        private static NioConnection accept(SocketChannel clientSocket) throws IOException {
+            NioConnection connection = new NioConnection(clientSocket.getRemoteAddress().toString(), clientSocket);
+            FrameDecoder frameDecoder = new FrameDecoder(BUFFER_POOL, MAX_FRAME_LENGTH);
+            connection.setContext(frameDecoder);
+            connection.setCloseListener(closed -> frameDecoder.release());
+            return connection;
+        }
 
-                        int readCount = clientSocket.read(incomingBuffer);
-                        if (readCount < 0) {
-                            throw new RuntimeException("socket中读取数据长度为【" + readCount + "】，如果是-1，则说明channel has reached end-of-stream");
-                        }
-                        // 如果上面sock.read(incomingBuffer)读完一段数据后，byteBuffer没有剩余空间了:
-                        if (!incomingBuffer.hasRemaining()) {
-                            incomingBuffer.flip();
-
-                            if (incomingBuffer == lengthBuffer) {
-                                // 相等，则说明读取的是数据包长度。客户端发来的数据包格式：【数据包总长度+真实数据】
-                                readLength();
-                                // todo:  【对于readLength()方法的疑问】：readLength()只是把数据包长度读出来，并根据长度分配一个用于接收真实数据的buffer,
-                                // todo:    但是读取真实数据，需要等到下一次selector.select()了。nio还能这样玩？
-
-                            } else {
-                                // 否则的话，就是读取 真实数据
-                                byte[] bytes = new byte[packetLength];
-                                incomingBuffer.get(bytes);
-                                System.out.println("接收到client发来的数据：【" + new String(bytes) + "】");
-                                reset();
-                            }
-                        }
-                    }
-                }
-                selectionKeys.clear();
+        private static void read(SelectionKey selectionKey) throws IOException {
+            NioConnection connection = (NioConnection) selectionKey.attachment();
+            FrameDecoder frameDecoder = connection.context();
+            if (frameDecoder.readFrom(connection, Server::onFrame) < 0) {
+                // channel has reached end-of-stream
+                connection.close();
             }
-
         }
 
         /**
-         * 一次客户端请求读取完毕之后，进行数据重置，等待下一条消息的读取。
+         * 打印收到的数据 并按同样的【长度 + 数据】格式原样回给客户端
          */
-        private static void reset() {
-            packetLength = -1;
-            lengthBuffer.clear();
-            incomingBuffer = lengthBuffer;
-        }
-
-        private static void readLength() {
-            packetLength = incomingBuffer.getInt();
-            if (packetLength < 0) {
-                throw new RuntimeException("客户端发来数据包总长度，不能小于0");
-            }
-
-            System.out.println("client 发来数据总长度为：" + packetLength);
-            incomingBuffer = ByteBuffer.allocate(packetLength);
+        private static void onFrame(NioConnection connection, ByteBuffer frame) throws IOException {
+            System.out.println("接收到client " + connection.id() + " 发来的数据：【" + UTF_8.decode(frame.duplicate()) + "】");
+
+            // frame只在回调期间有效 回写的数据要复制一份
+            ByteBuffer body = ByteBuffer.allocate(frame.remaining());
+            body.put(frame).flip();
+            ByteBuffer header = ByteBuffer.allocate(4);
+            header.putInt(body.remaining()).flip();
+            // 长度头和数据是两个buffer 一次gathering write发出 不需要先拼到一个buffer里
+            connection.write(header, body);
         }
 
     }
@@ -125,7 +104,8 @@ public class Zk_ClientCnxnSocketNIOReadLengthMethodQuestion {
             socketChannel.register(selector, SelectionKey.OP_CONNECT);
 
 
-            // 客户端只发送数据
+            // 客户端定时发送数据 同时读服务端按【长度 + 数据】回显的帧
+            // 不读的话回显的数据先堆满本地接收缓冲区 再堆满服务端NioConnection的发送队列 最后被服务端断开
             while (true) {
                 selector.select(1000);
                 Set<SelectionKey> selectionKeys = selector.selectedKeys();
@@ -136,6 +116,11 @@ public class Zk_ClientCnxnSocketNIOReadLengthMethodQuestion {
                             // 等待连接真正建立好
                             client.finishConnect();
 
+                            NioConnection connection = new NioConnection("server", client);
+                            connection.setContext(new FrameDecoder(new ByteBufferPool(false), Server.MAX_FRAME_LENGTH));
+                            selectionKey.attach(connection);
+                            selectionKey.interestOps(SelectionKey.OP_READ);
+
                             new Thread(() -> {
                                 while (true) {
                                     writeMessageToServer(selectionKey);
@@ -150,12 +135,24 @@ public class Zk_ClientCnxnSocketNIOReadLengthMethodQuestion {
                         }
 
 
+                    } else if (selectionKey.isReadable()) {
+                        NioConnection connection = (NioConnection) selectionKey.attachment();
+                        FrameDecoder frameDecoder = connection.context();
+                        if (frameDecoder.readFrom(connection, Client::onFrame) < 0) {
+                            System.out.println("server closed the connection");
+                            socketChannel.close();
+                            return;
+                        }
                     }
                 } // -- end   for selectionKeys
                 selectionKeys.clear();
             }// -- end wile true
         }
 
+        private static void onFrame(NioConnection connection, ByteBuffer frame) {
+            System.out.println("client receive : " + Server.UTF_8.decode(frame));
+        }
+
         private static void writeMessageToServer(SelectionKey selectionKey) {
             SocketChannel channel = (SocketChannel) selectionKey.channel();
             // 生成随机长度的随机字符串。作为客户端发送给服务端的【真实数据】
@@ -1,37 +1,44 @@
 package com.chenmual.netty.l_10_charset;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.nio.charset.CharsetEncoder;
 
+/**
+ * 用法: EncodeTest01 [输入文件 输出文件 源编码 目标编码]  默认 Char01.txt Char02.txt ISO-8859-1 ISO-8859-1
+ *
+ * 原来是把整个输入map进来 decoder.decode()成一个CharBuffer 再encoder.encode()一次写出
+ * 几个G的文件这样做内存不够 现在交给StreamingTranscoder按窗口流式转码
+ * -Dcharset.parallelism=N (N>1) 时用ParallelTranscoder 切段后在N个线程上并行转码
+ */
 public class EncodeTest01 {
 	public static void main(String[] args) throws IOException {
-	    String inputFile = "Char01.txt";
-	    String outputFile = "Char02.txt";
+	    String inputFile = args.length > 0 ? args[0] : "Char01.txt";
+	    String outputFile = args.length > 1 ? args[1] : "Char02.txt";
+		Charset from = Charset.forName(args.length > 2 ? args[2] : "ISO-8859-1");
+		Charset to = Charset.forName(args.length > 3 ? args[3] : from.name());
+
 		RandomAccessFile inputRandomAccessFile = new RandomAccessFile(inputFile, "r");
 		RandomAccessFile outputRandomAccessFile = new RandomAccessFile(outputFile, "rw");
-		long inputLength = new File(inputFile).length();
 		FileChannel inputFileChannel = inputRandomAccessFile.getChannel();
 		FileChannel outputFileChannel = outputRandomAccessFile.getChannel();
 
-		MappedByteBuffer inputData = inputFileChannel.map(FileChannel.MapMode.READ_ONLY, 0, inputLength);
-
-		Charset charset = Charset.forName("ISO-8859-1");
-		CharsetDecoder decoder = charset.newDecoder();//数组转字符串
-		CharsetEncoder encoder = charset.newEncoder();//字符串转成数组
-
-		CharBuffer charBuffer = decoder.decode(inputData);
-		ByteBuffer byteBuffer = encoder.encode(charBuffer);
+		long startTime = System.currentTimeMillis();
+		int parallelism = Integer.getInteger("charset.parallelism", 1);
+		long written;
+		if (parallelism > 1) {
+			ParallelTranscoder transcoder = new ParallelTranscoder(from, to, parallelism);
+			written = transcoder.transcode(inputFileChannel, outputFileChannel);
+			transcoder.shutdown();
+		} else {
+			//decoder: 数组转字符串 encoder: 字符串转成数组 都在StreamingTranscoder里复用
+			written = new StreamingTranscoder(from, to).transcode(inputFileChannel, outputFileChannel);
+			//输出文件原来可能更长 截掉多余的部分
+			outputFileChannel.truncate(written);
+		}
+		System.out.println(from + " -> " + to + ": " + inputFileChannel.size() + " -> " + written + " bytes, 耗时:" + (System.currentTimeMillis() - startTime));
 
-		outputFileChannel.write(byteBuffer);
 		outputRandomAccessFile.close();
 		inputRandomAccessFile.close();
 
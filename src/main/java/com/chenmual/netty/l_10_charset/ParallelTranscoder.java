@@ -0,0 +1,253 @@
+package com.chenmual.netty.l_10_charset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * 多核并行转码: 转码的瓶颈在decoder/encoder的CPU上 StreamingTranscoder只用一个核
+ *
+ * 输入按chunkSize切成若干段 每段的起点对齐到字符边界:
+ *   单字节编码(ISO-8859-1等)   任意位置都是字符边界
+ *   UTF-8                     向后跳过10xxxxxx的后续字节 停在下一个首字节上
+ *   GBK/GB18030/Big5等         这些编码的第二个字节不会是0x0A 所以对齐到下一个换行符之后(日志文件按行切分正合适)
+ *   UTF-16/32等               "\n"都不是单字节 没法从中间重新同步 不切分 退化成单线程
+ * 目标编码也要能切: 每段都用reset过的encoder从头编码
+ *   UTF-16/UTF-32这种开头写BOM的 每段开头都会有一个BOM 拼起来中间夹着BOM
+ *   ISO-2022-JP这种有shift状态的 每段结束都切回初始状态 下一段再切出来 多出转义序列 和单线程的结果不一样
+ *   目标编码是这两种时不切分 (UTF-16BE/UTF-16LE没有BOM 可以切)
+ * 各段在ForkJoinPool上并行转码 每个线程复用自己的StreamingTranscoder
+ *
+ * 每段输出写到哪个位置取决于前面所有段输出了多少字节 所以按批处理:
+ *   一批(parallelism * 2段)并行转码到内存 -> 按顺序算出每段的输出位置 -> 并行用FileChannel.write(buf, position)写到各自的位置
+ * 内存占用约为 一批的段数 * chunkSize * 膨胀系数(比如GBK转UTF-8最多1.5倍) 和文件大小无关
+ */
+public class ParallelTranscoder {
+	public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	//对齐字符边界时每次读多少字节来找边界
+	private static final int PROBE_SIZE = 4096;
+
+	enum Boundary {
+		ANY, UTF8_LEAD_BYTE, AFTER_NEWLINE, NONE
+	}
+
+	private final ForkJoinPool pool;
+
+	private final int chunkSize;
+
+	private final Boundary boundary;
+
+	private final ThreadLocal<StreamingTranscoder> transcoders;
+
+	private final boolean identity;
+
+	public ParallelTranscoder(Charset from, Charset to, int parallelism) {
+		this(from, to, new ForkJoinPool(parallelism), DEFAULT_CHUNK_SIZE);
+	}
+
+	public ParallelTranscoder(Charset from, Charset to, ForkJoinPool pool, int chunkSize) {
+		this.pool = pool;
+		this.chunkSize = chunkSize;
+		this.boundary = isStatelessEncoding(to) ? boundaryOf(from) : Boundary.NONE;
+		this.identity = StreamingTranscoder.isIdentity(from, to);
+		//每段最多chunkSize字节 一个窗口就能map完
+		this.transcoders = ThreadLocal.withInitial(() -> new StreamingTranscoder(from, to, Math.max(chunkSize, 64),
+				StreamingTranscoder.DEFAULT_BATCH_SIZE, CodingErrorAction.REPLACE));
+	}
+
+	static Boundary boundaryOf(Charset charset) {
+		if (charset.equals(StandardCharsets.UTF_8)) {
+			return Boundary.UTF8_LEAD_BYTE;
+		}
+		if (!charset.canEncode()) {
+			return Boundary.NONE;
+		}
+		if (charset.newEncoder().maxBytesPerChar() == 1.0f) {
+			return Boundary.ANY;
+		}
+		if (Arrays.equals("\n".getBytes(charset), new byte[]{'\n'})) {
+			return Boundary.AFTER_NEWLINE;
+		}
+		return Boundary.NONE;
+	}
+
+	/**
+	 * 分开编码再拼起来和一起编码结果相同 就是没有BOM也没有shift状态
+	 */
+	static boolean isStatelessEncoding(Charset charset) {
+		if (!charset.canEncode()) {
+			return false;
+		}
+		byte[] part = "\u4e2d".getBytes(charset);
+		byte[] whole = "\u4e2d\u4e2d".getBytes(charset);
+		byte[] joined = Arrays.copyOf(part, part.length * 2);
+		System.arraycopy(part, 0, joined, part.length, part.length);
+		return Arrays.equals(whole, joined);
+	}
+
+	/**
+	 * 把in的全部内容转码写入out(从位置0开始 多余的部分截掉) 返回写入的字节数
+	 */
+	public long transcode(FileChannel in, FileChannel out) throws IOException {
+		if (identity) {
+			//不需要转码 一次transferTo 不用切段
+			out.position(0);
+			long written = transcoders.get().transcode(in, out);
+			out.truncate(written);
+			return written;
+		}
+		List<long[]> regions = split(in);
+		int batchSize = pool.getParallelism() * 2;
+		long outputPosition = 0;
+		try {
+			for (int from = 0; from < regions.size(); from += batchSize) {
+				List<long[]> batch = regions.subList(from, Math.min(from + batchSize, regions.size()));
+				outputPosition = transcodeBatch(in, batch, out, outputPosition);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		out.truncate(outputPosition);
+		return outputPosition;
+	}
+
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	private long transcodeBatch(FileChannel in, List<long[]> batch, FileChannel out, long outputPosition) throws IOException, InterruptedException {
+		List<Callable<ChunkOutput>> transcodeTasks = new ArrayList<>(batch.size());
+		for (long[] region : batch) {
+			transcodeTasks.add(() -> {
+				ChunkOutput output = new ChunkOutput();
+				transcoders.get().transcode(in, region[0], region[1], output);
+				return output;
+			});
+		}
+		List<ChunkOutput> outputs = getAll(pool.invokeAll(transcodeTasks));
+
+		//前面的段都转完了 这一批每段的输出位置就确定了
+		List<Callable<Void>> writeTasks = new ArrayList<>(outputs.size());
+		for (ChunkOutput output : outputs) {
+			long position = outputPosition;
+			writeTasks.add(() -> {
+				output.writeTo(out, position);
+				return null;
+			});
+			outputPosition += output.size;
+		}
+		getAll(pool.invokeAll(writeTasks));
+		return outputPosition;
+	}
+
+	private static <T> List<T> getAll(List<Future<T>> futures) throws IOException, InterruptedException {
+		List<T> results = new ArrayList<>(futures.size());
+		for (Future<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * 按chunkSize切分 每段的起点对齐到字符边界 返回[start, end)的列表
+	 */
+	List<long[]> split(FileChannel in) throws IOException {
+		long size = in.size();
+		List<long[]> regions = new ArrayList<>();
+		if (boundary == Boundary.NONE) {
+			regions.add(new long[]{0, size});
+			return regions;
+		}
+		long start = 0;
+		while (start < size) {
+			long end = start + chunkSize >= size ? size : align(in, start + chunkSize, size);
+			regions.add(new long[]{start, end});
+			start = end;
+		}
+		return regions;
+	}
+
+	/**
+	 * 从position开始向后找第一个字符边界 找不到时返回size
+	 */
+	private long align(FileChannel in, long position, long size) throws IOException {
+		if (boundary == Boundary.ANY) {
+			return position;
+		}
+		ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+		while (position < size) {
+			probe.clear();
+			int read = in.read(probe, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				byte b = probe.get(i);
+				if (boundary == Boundary.UTF8_LEAD_BYTE && (b & 0xC0) != 0x80) {
+					return position + i;
+				}
+				if (boundary == Boundary.AFTER_NEWLINE && b == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+		return size;
+	}
+
+	/**
+	 * 一段的转码结果 StreamingTranscoder每攒满一批写一次 这里复制一份留着 等输出位置确定后再写文件
+	 */
+	private static class ChunkOutput implements WritableByteChannel {
+		private final List<ByteBuffer> buffers = new ArrayList<>();
+
+		private long size = 0;
+
+		@Override
+		public int write(ByteBuffer src) {
+			int length = src.remaining();
+			ByteBuffer copy = ByteBuffer.allocate(length);
+			copy.put(src).flip();
+			buffers.add(copy);
+			size += length;
+			return length;
+		}
+
+		void writeTo(FileChannel out, long position) throws IOException {
+			for (ByteBuffer buffer : buffers) {
+				while (buffer.hasRemaining()) {
+					position += out.write(buffer, position);
+				}
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.chenmual.netty.l_10_charset;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * 检查ParallelTranscoder和单线程的StreamingTranscoder输出的字节完全相同
+ *
+ * 用法: ParallelTranscoderCheck [UTF-8输入文件]  不给就生成一个中英文混合的临时文件
+ * 段大小用64K 一个几M的文件就会切成很多段 每种目标编码都转一遍比较 不一致时抛异常
+ * UTF-16(带BOM) ISO-2022-JP(有状态)不能切分 其他的会切分
+ */
+public class ParallelTranscoderCheck {
+	private static final String[] TARGETS = {"UTF-16", "UTF-16LE", "UTF-32", "GBK", "ISO-2022-JP", "ISO-8859-1", "UTF-8"};
+
+	public static void main(String[] args) throws IOException {
+		Path input = args.length > 0 ? Paths.get(args[0]) : generate();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (String target : TARGETS) {
+				check(input, Charset.forName(target), pool);
+			}
+		} finally {
+			pool.shutdown();
+			if (args.length == 0) {
+				Files.delete(input);
+			}
+		}
+	}
+
+	private static void check(Path input, Charset to, ForkJoinPool pool) throws IOException {
+		Path serial = Files.createTempFile("transcode-serial", ".out");
+		Path parallel = Files.createTempFile("transcode-parallel", ".out");
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ)) {
+			try (FileChannel out = FileChannel.open(serial, StandardOpenOption.WRITE)) {
+				new StreamingTranscoder(StandardCharsets.UTF_8, to).transcode(in, out);
+			}
+			ParallelTranscoder transcoder = new ParallelTranscoder(StandardCharsets.UTF_8, to, pool, 64 * 1024);
+			int regions = transcoder.split(in).size();
+			try (FileChannel out = FileChannel.open(parallel, StandardOpenOption.WRITE)) {
+				transcoder.transcode(in, out);
+			}
+			byte[] expected = Files.readAllBytes(serial);
+			byte[] actual = Files.readAllBytes(parallel);
+			if (!Arrays.equals(expected, actual)) {
+				throw new IllegalStateException("UTF-8 -> " + to + ": parallel output (" + actual.length + " bytes, "
+						+ regions + " regions) differs from serial output (" + expected.length + " bytes)");
+			}
+			System.out.println("UTF-8 -> " + to + ": " + regions + " regions, " + actual.length + " bytes, OK");
+		} finally {
+			Files.delete(serial);
+			Files.delete(parallel);
+		}
+	}
+
+	/**
+	 * 约4M 每行有ASCII 中文 拉丁字母 还有4字节的emoji(UTF-16里是代理对)
+	 */
+	private static Path generate() throws IOException {
+		Path file = Files.createTempFile("transcode-check", ".txt");
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; text.length() < 2 * 1024 * 1024; i++) {
+			text.append(i).append(" hello 你好 世界 café 😀\n");
+		}
+		Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+}
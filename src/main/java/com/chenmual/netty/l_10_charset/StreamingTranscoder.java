@@ -0,0 +1,239 @@
+package com.chenmual.netty.l_10_charset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 流式转码: 源编码的文件 -> 目标编码的文件 内存占用固定 和文件大小无关
+ *
+ * EncodeTest01原来的写法是把整个文件map进来 一次decode成一个CharBuffer 再一次encode
+ * 文件有几个G时CharBuffer放不下(而且超过2G根本map不了) 这里改成:
+ *   输入按windowSize一段一段map 每段交给同一个CharsetDecoder 解出来的字符放进一个固定大小的CharBuffer
+ *   CharBuffer满了就交给同一个CharsetEncoder 编码结果攒在一个direct buffer里 攒满一批再写文件
+ *
+ * 窗口边界上的半个字符(比如GBK的两字节只map进来一个 UTF-8的三字节只map进来两个):
+ *   decode(endOfInput=false)遇到不完整的字节序列时停在它前面 不算错误
+ *   下一个窗口直接从decoder停下的位置开始map 这几个字节会被重新map进来 和后面的字节一起解码 不需要另外的拼接buffer
+ * 字符一侧同理: 代理对的高位落在CharBuffer末尾时encoder不会处理它 compact之后留到下一轮
+ *
+ * 快速路径(不经过CharBuffer):
+ *   源编码和目标编码相同: 直接transferTo 字节原样复制 (不校验非法字节)
+ *   两边都兼容ASCII(ASCII字符的字节相同 比如GBK/ISO-8859-1/UTF-8之间): 窗口开头连续的纯ASCII字节
+ *     (每次检查8个字节的最高位)直接transferTo 遇到第一个非ASCII字节后 从那里开始的窗口正常解码
+ *   目标是UTF-8: 用Utf8Encoder代替CharsetEncoder
+ *
+ * 一个实例里的decoder/encoder会被复用 不是线程安全的 每个线程用自己的实例
+ */
+public class StreamingTranscoder {
+	public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	public static final int DEFAULT_BATCH_SIZE = 1024 * 1024;
+
+	private static final int CHAR_BUFFER_SIZE = 256 * 1024;
+
+	//纯ASCII的开头至少这么长才单独transferTo 太短的话不如直接解码
+	private static final int MIN_ASCII_RUN = 64 * 1024;
+
+	private static final long HIGH_BITS = 0x8080808080808080L;
+
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	private final CharsetDecoder decoder;
+
+	private final CharsetEncoder encoder;
+
+	private final int windowSize;
+
+	private final CharBuffer chars = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+
+	private final ByteBuffer batch;
+
+	private final boolean identity;
+
+	private final boolean asciiCompatible;
+
+	private final boolean utf8Target;
+
+	public StreamingTranscoder(Charset from, Charset to) {
+		this(from, to, DEFAULT_WINDOW_SIZE, DEFAULT_BATCH_SIZE, CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * @param errorAction 非法/无法映射的字符怎么处理 日志转码一般用REPLACE 要求严格时用REPORT(抛出CharacterCodingException)
+	 */
+	public StreamingTranscoder(Charset from, Charset to, int windowSize, int batchSize, CodingErrorAction errorAction) {
+		if (windowSize < 64) {
+			throw new IllegalArgumentException("windowSize too small: " + windowSize);
+		}
+		this.decoder = from.newDecoder().onMalformedInput(errorAction).onUnmappableCharacter(errorAction);
+		this.encoder = to.newEncoder().onMalformedInput(errorAction).onUnmappableCharacter(errorAction);
+		this.windowSize = windowSize;
+		this.batch = ByteBuffer.allocateDirect(batchSize);
+		this.identity = isIdentity(from, to);
+		this.asciiCompatible = isAsciiCompatible(from) && isAsciiCompatible(to);
+		//Utf8Encoder对孤立的代理字符只会替换成'?'
+		this.utf8Target = to.equals(StandardCharsets.UTF_8) && errorAction == CodingErrorAction.REPLACE;
+	}
+
+	static boolean isIdentity(Charset from, Charset to) {
+		return from.equals(to);
+	}
+
+	/**
+	 * 0x00~0x7F在这个编码里是不是就是对应的ASCII字符(双向都是)
+	 * ISO-2022系列是有状态的: 同样的字节在不同的shift状态下是不同的字符 不能单独拿出一段当ASCII
+	 */
+	static boolean isAsciiCompatible(Charset charset) {
+		if (!charset.canEncode() || charset.name().contains("2022")) {
+			return false;
+		}
+		byte[] ascii = new byte[128];
+		for (int i = 0; i < ascii.length; i++) {
+			ascii[i] = (byte) i;
+		}
+		String text = new String(ascii, StandardCharsets.US_ASCII);
+		return Arrays.equals(text.getBytes(charset), ascii) && text.equals(new String(ascii, charset));
+	}
+
+	/**
+	 * 把in中[0, in.size())的内容转码后从out的当前位置开始写入 返回写入的字节数
+	 */
+	public long transcode(FileChannel in, FileChannel out) throws IOException {
+		return transcode(in, 0, in.size(), out);
+	}
+
+	/**
+	 * 把in中[start, end)的内容转码后写入out(文件时从当前位置开始) 返回写入的字节数
+	 * start必须在一个字符的开头
+	 */
+	public long transcode(FileChannel in, long start, long end, WritableByteChannel out) throws IOException {
+		if (identity) {
+			return transferTo(in, start, end, out);
+		}
+		decoder.reset();
+		encoder.reset();
+		chars.clear();
+		batch.clear();
+		long written = 0;
+
+		long position = start;
+		while (true) {
+			long length = Math.min(windowSize, end - position);
+			boolean last = position + length == end;
+			MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+			if (asciiCompatible && chars.position() == 0) {
+				int asciiRun = asciiPrefixLength(window);
+				if (asciiRun == length || asciiRun >= MIN_ASCII_RUN) {
+					//前面解码出来的都已经编码进batch 先写出去 保证顺序
+					written += writeBatch(out);
+					written += transferTo(in, position, position + asciiRun, out);
+					position += asciiRun;
+					if (position == end) {
+						break;
+					}
+					continue;
+				}
+			}
+			while (true) {
+				CoderResult result = decoder.decode(window, chars, last);
+				written += encodeChars(out, false);
+				if (result.isUnderflow()) {
+					break;
+				}
+				if (result.isError()) {
+					result.throwException();
+				}
+				//overflow: CharBuffer满了 上面已经编码腾出了空间 继续解
+			}
+			//窗口末尾没解完的半个字符从下一个窗口的开头重新读
+			position += window.position();
+			if (last) {
+				break;
+			}
+			if (window.position() == 0) {
+				//窗口比一个字符还小才会走到这里
+				throw new IOException("no progress decoding at position " + position);
+			}
+		}
+
+		//最后一个窗口可能走的是ASCII快速路径 decoder还没收到过endOfInput=true 补一次才能flush
+		decoder.decode(EMPTY, chars, true);
+		while (decoder.flush(chars).isOverflow()) {
+			written += encodeChars(out, false);
+		}
+		written += encodeChars(out, true);
+		while (!utf8Target) {
+			CoderResult result = encoder.flush(batch);
+			if (result.isUnderflow()) {
+				break;
+			}
+			written += writeBatch(out);
+		}
+		written += writeBatch(out);
+		return written;
+	}
+
+	/**
+	 * 把chars中的字符编码进batch batch满了就写文件 返回这次写入文件的字节数
+	 */
+	private long encodeChars(WritableByteChannel out, boolean endOfInput) throws IOException {
+		long written = 0;
+		chars.flip();
+		while (true) {
+			CoderResult result = utf8Target ? Utf8Encoder.encode(chars, batch, endOfInput) : encoder.encode(chars, batch, endOfInput);
+			if (result.isUnderflow()) {
+				break;
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			written += writeBatch(out);
+		}
+		chars.compact();
+		return written;
+	}
+
+	/**
+	 * window开头有多少个连续的ASCII字节 每次取8个字节检查最高位
+	 */
+	static int asciiPrefixLength(ByteBuffer window) {
+		int limit = window.limit();
+		int i = window.position();
+		while (limit - i >= 8 && (window.getLong(i) & HIGH_BITS) == 0) {
+			i += 8;
+		}
+		while (i < limit && window.get(i) >= 0) {
+			i++;
+		}
+		return i - window.position();
+	}
+
+	private static long transferTo(FileChannel in, long start, long end, WritableByteChannel out) throws IOException {
+		long position = start;
+		while (position < end) {
+			position += in.transferTo(position, end - position, out);
+		}
+		return end - start;
+	}
+
+	private long writeBatch(WritableByteChannel out) throws IOException {
+		batch.flip();
+		long written = 0;
+		while (batch.hasRemaining()) {
+			written += out.write(batch);
+		}
+		batch.clear();
+		return written;
+	}
+}
@@ -0,0 +1,139 @@
+package com.chenmual.netty.l_10_charset;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 手写的UTF-8编码循环 直接写ByteBuffer/ByteBuf 不经过CharsetEncoder
+ *
+ * 文本里绝大部分是ASCII时 每次取8个字符 全部小于0x80就拼成一个long一次putLong写出
+ * 其余字符按UTF-8规则写1~4个字节 孤立的代理字符写'?' (和JDK的UTF-8 encoder用REPLACE时的结果一样)
+ */
+public final class Utf8Encoder {
+	private Utf8Encoder() {
+	}
+
+	/**
+	 * 编码chars个字符最多需要的字节数(代理对是2个char对应4个字节 不超过每个char 3字节)
+	 */
+	public static int maxBytes(int chars) {
+		return chars * 3;
+	}
+
+	/**
+	 * 和CharsetEncoder.encode(in, out, endOfInput)的约定相同:
+	 * dst放不下时返回OVERFLOW 否则返回UNDERFLOW endOfInput为false时src末尾的高位代理留在src中等后面的低位代理
+	 */
+	public static CoderResult encode(CharBuffer src, ByteBuffer dst, boolean endOfInput) {
+		int length = src.remaining();
+		int consumed = encode(src, 0, length, dst, endOfInput);
+		src.position(src.position() + consumed);
+		if (consumed == length || (!endOfInput && consumed == length - 1 && Character.isHighSurrogate(src.get(src.position())))) {
+			return CoderResult.UNDERFLOW;
+		}
+		return CoderResult.OVERFLOW;
+	}
+
+	/**
+	 * 把整个s写到buf的writerIndex处 返回写入的字节数
+	 */
+	public static int writeUtf8(ByteBuf buf, CharSequence s) {
+		int maxBytes = maxBytes(s.length());
+		buf.ensureWritable(maxBytes);
+		if (buf instanceof CompositeByteBuf || buf.nioBufferCount() != 1) {
+			//CompositeByteBuf的internalNioBuffer可能是一份拷贝 写进去会丢
+			//不用ByteBufUtil.writeUtf8: 这个版本遇到孤立的高位代理时 会把后面一个字符截成一个字节写出
+			byte[] bytes = s.toString().getBytes(StandardCharsets.UTF_8);
+			buf.writeBytes(bytes);
+			return bytes.length;
+		}
+		ByteBuffer dst = buf.internalNioBuffer(buf.writerIndex(), maxBytes);
+		int start = dst.position();
+		encode(s, 0, s.length(), dst, true);
+		int written = dst.position() - start;
+		buf.writerIndex(buf.writerIndex() + written);
+		return written;
+	}
+
+	/**
+	 * 编码src中[from, to)的字符 从dst.position()开始写 返回下一个没有编码的字符的下标
+	 * 遇到dst放不下 或者(endOfInput为false时)末尾是高位代理时提前停下
+	 */
+	static int encode(CharSequence src, int from, int to, ByteBuffer dst, boolean endOfInput) {
+		int i = from;
+		int p = dst.position();
+		int limit = dst.limit();
+		boolean bigEndian = dst.order() == ByteOrder.BIG_ENDIAN;
+		while (i < to) {
+			if (to - i >= 8 && limit - p >= 8) {
+				char c0 = src.charAt(i);
+				char c1 = src.charAt(i + 1);
+				char c2 = src.charAt(i + 2);
+				char c3 = src.charAt(i + 3);
+				char c4 = src.charAt(i + 4);
+				char c5 = src.charAt(i + 5);
+				char c6 = src.charAt(i + 6);
+				char c7 = src.charAt(i + 7);
+				if (((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) & 0xFF80) == 0) {
+					long v = (long) c0 << 56 | (long) c1 << 48 | (long) c2 << 40 | (long) c3 << 32
+							| (long) c4 << 24 | (long) c5 << 16 | (long) c6 << 8 | c7;
+					dst.putLong(p, bigEndian ? v : Long.reverseBytes(v));
+					i += 8;
+					p += 8;
+					continue;
+				}
+			}
+
+			char c = src.charAt(i);
+			if (c < 0x80) {
+				if (p == limit) {
+					break;
+				}
+				dst.put(p++, (byte) c);
+				i++;
+			} else if (c < 0x800) {
+				if (limit - p < 2) {
+					break;
+				}
+				dst.put(p++, (byte) (0xC0 | (c >> 6)));
+				dst.put(p++, (byte) (0x80 | (c & 0x3F)));
+				i++;
+			} else if (!Character.isSurrogate(c)) {
+				if (limit - p < 3) {
+					break;
+				}
+				dst.put(p++, (byte) (0xE0 | (c >> 12)));
+				dst.put(p++, (byte) (0x80 | ((c >> 6) & 0x3F)));
+				dst.put(p++, (byte) (0x80 | (c & 0x3F)));
+				i++;
+			} else if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(src.charAt(i + 1))) {
+				if (limit - p < 4) {
+					break;
+				}
+				int codePoint = Character.toCodePoint(c, src.charAt(i + 1));
+				dst.put(p++, (byte) (0xF0 | (codePoint >> 18)));
+				dst.put(p++, (byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				dst.put(p++, (byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				dst.put(p++, (byte) (0x80 | (codePoint & 0x3F)));
+				i += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 == to && !endOfInput) {
+				//低位代理可能在下一批字符里
+				break;
+			} else {
+				if (p == limit) {
+					break;
+				}
+				dst.put(p++, (byte) '?');
+				i++;
+			}
+		}
+		dst.position(p);
+		return i;
+	}
+}
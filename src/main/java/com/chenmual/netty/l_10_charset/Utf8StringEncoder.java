@@ -0,0 +1,28 @@
+package com.chenmual.netty.l_10_charset;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 替代new StringEncoder(CharsetUtil.UTF_8)
+ * StringEncoder每条消息都CharBuffer.wrap(msg)再走CharsetEncoder 这里用Utf8Encoder直接写进分配好的ByteBuf
+ * 没有状态 所有channel共用一个实例
+ */
+@ChannelHandler.Sharable
+public class Utf8StringEncoder extends MessageToMessageEncoder<CharSequence> {
+	public static final Utf8StringEncoder INSTANCE = new Utf8StringEncoder();
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, CharSequence msg, List<Object> out) {
+		if (msg.length() == 0) {
+			return;
+		}
+		ByteBuf buf = ctx.alloc().buffer(Utf8Encoder.maxBytes(msg.length()));
+		Utf8Encoder.writeUtf8(buf, msg);
+		out.add(buf);
+	}
+}
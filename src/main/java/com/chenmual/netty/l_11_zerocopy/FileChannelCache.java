@@ -0,0 +1,136 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 打开的FileChannel缓存 热门文件不用每个请求都open/close一次
+ *
+ * 按最近使用淘汰(LRU) 最多maxOpenFiles个
+ * 一个FileChannel可能同时被多个请求使用(DefaultFileRegion的transferTo和HttpFileServerHandler.CachedChunkedFile都按绝对位置读
+ * 不改channel的position 可以共用 netty这个版本的ChunkedNioFile从channel当前的position读 不能用在这里的channel上)
+ * 所以用引用计数: 缓存自己持有一个引用 每个请求acquire时加一个 用完release 计数到0才真正close
+ * 被淘汰或者文件变了(大小/修改时间不同)时缓存放掉自己的引用 正在传输的请求不受影响
+ *
+ * 所有worker线程共用 map的访问在this锁内
+ * 打开文件不在锁内: open可能很慢(比如网络文件系统) 在锁内的话所有EventLoop上的请求都要等它
+ *   两个线程同时打开同一个文件时 先放进map的留下 后打开的关掉
+ */
+public class FileChannelCache {
+	public static final class Handle {
+		private final FileChannel channel;
+
+		private final long size;
+
+		private final long lastModified;
+
+		//初始的1是缓存自己的引用
+		private final AtomicInteger refCnt = new AtomicInteger(1);
+
+		private Handle(FileChannel channel, long size, long lastModified) {
+			this.channel = channel;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		public FileChannel channel() {
+			return channel;
+		}
+
+		public long size() {
+			return size;
+		}
+
+		public long lastModified() {
+			return lastModified;
+		}
+
+		private Handle retain() {
+			refCnt.incrementAndGet();
+			return this;
+		}
+
+		public void release() {
+			if (refCnt.decrementAndGet() == 0) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private final Map<Path, Handle> handles;
+
+	public FileChannelCache(int maxOpenFiles) {
+		this.handles = new LinkedHashMap<Path, Handle>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Path, Handle> eldest) {
+				if (size() > maxOpenFiles) {
+					eldest.getValue().release();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 返回path对应的已打开的channel 调用方用完必须release()一次
+	 * attributes是调用方刚stat到的属性 和缓存中的不一样说明文件被改过或替换了 重新打开
+	 */
+	public Handle acquire(Path path, BasicFileAttributes attributes) throws IOException {
+		long size = attributes.size();
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		synchronized (this) {
+			Handle handle = lookup(path, size, lastModified);
+			if (handle != null) {
+				return handle.retain();
+			}
+		}
+		Handle opened = new Handle(FileChannel.open(path, StandardOpenOption.READ), size, lastModified);
+		synchronized (this) {
+			Handle handle = lookup(path, size, lastModified);
+			if (handle != null) {
+				opened.release();
+				return handle.retain();
+			}
+			handles.put(path, opened);
+			return opened.retain();
+		}
+	}
+
+	/**
+	 * 缓存中大小和修改时间都对得上的handle 对不上的从缓存中去掉 必须持有this锁
+	 */
+	private Handle lookup(Path path, long size, long lastModified) {
+		Handle handle = handles.get(path);
+		if (handle != null && (handle.size != size || handle.lastModified != lastModified)) {
+			handles.remove(path);
+			handle.release();
+			return null;
+		}
+		return handle;
+	}
+
+	public synchronized void clear() {
+		Iterator<Handle> iterator = handles.values().iterator();
+		while (iterator.hasNext()) {
+			iterator.next().release();
+			iterator.remove();
+		}
+	}
+
+	static BasicFileAttributes stat(Path path) throws IOException {
+		return Files.readAttributes(path, BasicFileAttributes.class);
+	}
+}
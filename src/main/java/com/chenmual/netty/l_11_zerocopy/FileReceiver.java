@@ -0,0 +1,149 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+
+/**
+ * 把socket上收到的数据写到文件 数据不进java堆
+ *
+ * 两种方式:
+ *   DIRECT_BUFFER  大块的direct buffer: 尽量读满一块(默认1M)再按位置写一次文件 内核->direct buffer->内核 没有堆上的byte[]
+ *   TRANSFER_FROM  FileChannel.transferFrom(socketChannel, position, n)
+ *                  JDK对非FileChannel的源没有splice 内部是用8K的临时direct buffer循环读写 系统调用次数比DIRECT_BUFFER多
+ *                  留着和DIRECT_BUFFER对比(UploadBenchmark)
+ *
+ * 预分配: java没有fallocate 这里在写到文件末尾前一次把文件扩大preallocateSize(写最后一个字节)
+ * 不用每次write都改文件大小 结束时再truncate到实际长度
+ * forceInterval > 0 时每写这么多字节force一次(不强制刷元数据) 结束时再force一次 控制掉电时最多丢多少数据
+ *
+ * in的read必须是阻塞的语义(不返回0 比如阻塞模式的SocketChannel 或者UploadServer.TimeoutReadChannel) 一个FileReceiver里有一块buffer 不是线程安全的 每个线程/连接用自己的
+ */
+public class FileReceiver {
+	public enum Mode {
+		DIRECT_BUFFER, TRANSFER_FROM
+	}
+
+	public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+	public static final long DEFAULT_PREALLOCATE_SIZE = 64 * 1024 * 1024;
+
+	private final Mode mode;
+
+	private final int bufferSize;
+
+	private final long preallocateSize;
+
+	private final long forceInterval;
+
+	private ByteBuffer buffer;
+
+	public FileReceiver() {
+		this(Mode.DIRECT_BUFFER, DEFAULT_BUFFER_SIZE, DEFAULT_PREALLOCATE_SIZE, 0);
+	}
+
+	/**
+	 * @param preallocateSize 0表示不预分配
+	 * @param forceInterval   0表示只在结束时force(也不force就传负数)
+	 */
+	public FileReceiver(Mode mode, int bufferSize, long preallocateSize, long forceInterval) {
+		this.mode = mode;
+		this.bufferSize = bufferSize;
+		this.preallocateSize = preallocateSize;
+		this.forceInterval = forceInterval;
+	}
+
+	/**
+	 * 从in读到EOF 从position开始写入out 返回收到的字节数
+	 * 文件原来比position + 收到的字节数长时 多余的部分会被截掉
+	 * 中途出错(对方断线等)时也会截到已经写完的位置 文件长度就是下次续传的起点
+	 */
+	public long receive(ReadableByteChannel in, FileChannel out, long position) throws IOException {
+		long start = position;
+		long lastForce = position;
+		try {
+			while (true) {
+				preallocate(out, position + bufferSize);
+				long n = mode == Mode.TRANSFER_FROM ? out.transferFrom(in, position, bufferSize) : readAndWrite(in, out, position);
+				if (n <= 0) {
+					//阻塞的socket上transferFrom返回0 readAndWrite返回-1 都是对方关闭了
+					break;
+				}
+				position += n;
+				if (forceInterval > 0 && position - lastForce >= forceInterval) {
+					out.force(false);
+					lastForce = position;
+				}
+			}
+		} finally {
+			if (out.isOpen() && out.size() > position) {
+				out.truncate(position);
+			}
+		}
+		if (forceInterval >= 0) {
+			out.force(false);
+		}
+		return position - start;
+	}
+
+	/**
+	 * 从in读正好length个字节 写到out的[position, position + length) 同时算checksum
+	 * 只用DIRECT_BUFFER方式(要在写盘前看到数据才能算checksum) 不预分配 不force
+	 * 对方提前关闭时抛EOFException
+	 */
+	public void receiveSegment(ReadableByteChannel in, FileChannel out, long position, long length, CRC32 checksum) throws IOException {
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+		long end = position + length;
+		while (position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			while (buffer.hasRemaining()) {
+				if (in.read(buffer) < 0) {
+					throw new EOFException("segment ended at " + (position + buffer.position()) + ", expected " + end);
+				}
+			}
+			buffer.flip();
+			checksum.update(buffer);
+			buffer.rewind();
+			while (buffer.hasRemaining()) {
+				position += out.write(buffer, position);
+			}
+		}
+	}
+
+	/**
+	 * 读满一块buffer(或者读到EOF)再一次写到文件 返回这次写的字节数 EOF并且什么也没读到时返回-1
+	 */
+	private long readAndWrite(ReadableByteChannel in, FileChannel out, long position) throws IOException {
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+		buffer.clear();
+		int read = 0;
+		while (buffer.hasRemaining() && read >= 0) {
+			read = in.read(buffer);
+		}
+		buffer.flip();
+		if (read < 0 && !buffer.hasRemaining()) {
+			return -1;
+		}
+		int length = buffer.remaining();
+		while (buffer.hasRemaining()) {
+			position += out.write(buffer, position);
+		}
+		return length;
+	}
+
+	private void preallocate(FileChannel out, long required) throws IOException {
+		if (preallocateSize <= 0 || out.size() >= required) {
+			return;
+		}
+		//每preallocateSize字节才有一次 分配一个字节的buffer无所谓
+		out.write(ByteBuffer.allocate(1), Math.max(required, out.size() + preallocateSize) - 1);
+	}
+}
@@ -0,0 +1,84 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 用transferTo把文件的[position, end)发到socket 直到全部发完
+ *
+ * NewClient原来只调一次transferTo: 非阻塞socket的发送缓冲区满了就只发出去一部分
+ * 而且一次调用最多发Integer.MAX_VALUE字节(linux的sendfile本身也限制在2G左右) 大文件一定发不全
+ * 这里按chunkSize循环调用 非阻塞socket上transferTo返回0时用一个临时的Selector等OP_WRITE
+ * 每发出progressInterval字节回调一次listener 返回值就是发到的位置 断线重连后可以从这个位置继续发
+ */
+public class FileSender {
+	public interface ProgressListener {
+		void progress(long position, long end);
+	}
+
+	public static final long DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private final long chunkSize;
+
+	private final long writeTimeoutMillis;
+
+	private final long progressInterval;
+
+	private final ProgressListener listener;
+
+	public FileSender() {
+		this(DEFAULT_CHUNK_SIZE, 30_000, 0, null);
+	}
+
+	/**
+	 * @param writeTimeoutMillis 等OP_WRITE最多等多久 超时抛SocketTimeoutException 0表示一直等
+	 * @param progressInterval   每发多少字节回调一次listener 0表示每次transferTo之后都回调
+	 */
+	public FileSender(long chunkSize, long writeTimeoutMillis, long progressInterval, ProgressListener listener) {
+		this.chunkSize = chunkSize;
+		this.writeTimeoutMillis = writeTimeoutMillis;
+		this.progressInterval = progressInterval;
+		this.listener = listener;
+	}
+
+	public long send(FileChannel file, long position, long end, SocketChannel socket) throws IOException {
+		Selector selector = null;
+		try {
+			long lastReport = position;
+			while (position < end) {
+				long n = file.transferTo(position, Math.min(chunkSize, end - position), socket);
+				if (n > 0) {
+					position += n;
+					if (listener != null && (position - lastReport >= progressInterval || position == end)) {
+						listener.progress(position, end);
+						lastReport = position;
+					}
+					continue;
+				}
+				if (position >= file.size()) {
+					throw new EOFException("file truncated to " + file.size() + " while sending, expected " + end);
+				}
+				//发送缓冲区满了
+				if (selector == null) {
+					selector = Selector.open();
+					socket.register(selector, SelectionKey.OP_WRITE);
+				}
+				if (selector.select(writeTimeoutMillis) == 0 && writeTimeoutMillis > 0) {
+					throw new SocketTimeoutException("socket not writable for " + writeTimeoutMillis + "ms at position " + position);
+				}
+				selector.selectedKeys().clear();
+			}
+			return position;
+		} finally {
+			if (selector != null) {
+				//注销socket 之后还可以改回阻塞模式
+				selector.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * NewClient/NewServer的生产版本: 基于netty的http文件服务器
+ *
+ * 用法: HttpFileServer [根目录 端口]  默认 当前目录 8899
+ *   -Dfile.server.ssl=true              开启https 证书用-Dfile.server.cert/-Dfile.server.key(PEM) 不给就用自签名证书
+ *   -Dfile.server.maxOpenFiles=1024     FileChannelCache最多缓存多少个打开的文件
+ *
+ * 明文连接: 文件内容用DefaultFileRegion发送 底层是FileChannel.transferTo 在linux上就是sendfile 数据不经过用户态
+ * https: 数据要在用户态加密 没法零拷贝 按块读出来(ChunkedInput)交给SslHandler
+ * 支持Range请求(断点续传/多线程下载) 支持HEAD和keep-alive
+ *
+ * 测试: curl -o /dev/null http://localhost:8899/xxx  curl -r 100-199 http://localhost:8899/xxx
+ */
+public class HttpFileServer {
+	public static void main(String[] args) throws Exception {
+		Path root = Paths.get(args.length > 0 ? args[0] : ".").toRealPath();
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8899;
+
+		SslContext sslContext = null;
+		if (Boolean.getBoolean("file.server.ssl")) {
+			String cert = System.getProperty("file.server.cert");
+			String key = System.getProperty("file.server.key");
+			if (cert != null && key != null) {
+				sslContext = SslContextBuilder.forServer(new File(cert), new File(key)).build();
+			} else {
+				SelfSignedCertificate certificate = new SelfSignedCertificate();
+				sslContext = SslContextBuilder.forServer(certificate.certificate(), certificate.privateKey()).build();
+			}
+		}
+		FileChannelCache cache = new FileChannelCache(Integer.getInteger("file.server.maxOpenFiles", 1024));
+
+		EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+		EventLoopGroup workerGroup = new NioEventLoopGroup();
+		try {
+			ServerBootstrap serverBootstrap = new ServerBootstrap();
+			ByteBufAllocatorConfig.configure(serverBootstrap);
+			serverBootstrap.group(bossGroup, workerGroup)
+					.channel(NioServerSocketChannel.class)
+					.option(ChannelOption.SO_BACKLOG, 1024)
+					.childOption(ChannelOption.TCP_NODELAY, true)
+					.childHandler(new HttpFileServerInitializer(sslContext, new HttpFileServerHandler(root, cache)));
+
+			ChannelFuture channelFuture = serverBootstrap.bind(port).sync();
+			System.out.println((sslContext == null ? "http" : "https") + "://localhost:" + port + "/ -> " + root);
+
+			channelFuture.channel().closeFuture().sync();
+		} finally {
+			bossGroup.shutdownGracefully();
+			workerGroup.shutdownGracefully();
+			cache.clear();
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DateFormatter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.CharsetUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Date;
+
+/**
+ * 只读的文件服务 没有状态 所有channel共用一个实例
+ */
+@ChannelHandler.Sharable
+public class HttpFileServerHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+	//https时每次从文件读多少字节交给SslHandler 一条TLS记录最大16K
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	//Range有效但超出文件范围
+	private static final long[] UNSATISFIABLE = new long[0];
+
+	private final Path root;
+
+	private final FileChannelCache cache;
+
+	/**
+	 * @param root 已经toRealPath()过的根目录 请求的文件解析符号链接之后必须还在它下面
+	 */
+	public HttpFileServerHandler(Path root, FileChannelCache cache) {
+		this.root = root;
+		this.cache = cache;
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
+		boolean keepAlive = HttpUtil.isKeepAlive(request);
+		if (!request.decoderResult().isSuccess()) {
+			sendError(ctx, HttpResponseStatus.BAD_REQUEST, false);
+			return;
+		}
+		boolean head = HttpMethod.HEAD.equals(request.method());
+		if (!head && !HttpMethod.GET.equals(request.method())) {
+			sendError(ctx, HttpResponseStatus.METHOD_NOT_ALLOWED, keepAlive);
+			return;
+		}
+
+		Path path = resolve(request.uri());
+		if (path == null) {
+			sendError(ctx, HttpResponseStatus.FORBIDDEN, keepAlive);
+			return;
+		}
+		BasicFileAttributes attributes;
+		try {
+			//root下的符号链接可能指向root外面 normalize只处理了../ 要按解析链接之后的真实路径再检查一次
+			path = path.toRealPath();
+			attributes = FileChannelCache.stat(path);
+		} catch (NoSuchFileException e) {
+			sendError(ctx, HttpResponseStatus.NOT_FOUND, keepAlive);
+			return;
+		} catch (AccessDeniedException e) {
+			sendError(ctx, HttpResponseStatus.FORBIDDEN, keepAlive);
+			return;
+		}
+		if (!path.startsWith(root) || !attributes.isRegularFile()) {
+			sendError(ctx, HttpResponseStatus.FORBIDDEN, keepAlive);
+			return;
+		}
+
+		long size = attributes.size();
+		long[] range = parseRange(request.headers().get(HttpHeaderNames.RANGE), size);
+		if (range == UNSATISFIABLE) {
+			FullHttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.headers().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + size);
+			HttpUtil.setContentLength(response, 0);
+			HttpUtil.setKeepAlive(response, keepAlive);
+			finish(ctx.writeAndFlush(response), keepAlive);
+			return;
+		}
+		long start = range == null ? 0 : range[0];
+		long length = range == null ? size : range[1] - range[0] + 1;
+
+		HttpResponse response = new DefaultHttpResponse(request.protocolVersion(),
+				range == null ? HttpResponseStatus.OK : HttpResponseStatus.PARTIAL_CONTENT);
+		response.headers().set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+		response.headers().set(HttpHeaderNames.LAST_MODIFIED, DateFormatter.format(new Date(attributes.lastModifiedTime().toMillis())));
+		String contentType = URLConnection.guessContentTypeFromName(path.getFileName().toString());
+		response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType != null ? contentType : "application/octet-stream");
+		if (range != null) {
+			response.headers().set(HttpHeaderNames.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + size);
+		}
+		HttpUtil.setContentLength(response, length);
+		HttpUtil.setKeepAlive(response, keepAlive);
+
+		if (head || length == 0) {
+			ctx.write(response);
+			finish(ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT), keepAlive);
+			return;
+		}
+
+		FileChannelCache.Handle handle;
+		try {
+			handle = cache.acquire(path, attributes);
+		} catch (NoSuchFileException e) {
+			//stat之后打开之前文件被删了 响应头还没发 可以正常回错误
+			sendError(ctx, HttpResponseStatus.NOT_FOUND, keepAlive);
+			return;
+		} catch (AccessDeniedException e) {
+			sendError(ctx, HttpResponseStatus.FORBIDDEN, keepAlive);
+			return;
+		}
+		ctx.write(response);
+		ChannelFuture lastContentFuture;
+		if (ctx.pipeline().get(SslHandler.class) == null) {
+			//零拷贝: sendfile直接从page cache发到socket
+			ctx.write(new CachedFileRegion(handle, start, length));
+			lastContentFuture = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+		} else {
+			//HttpChunkedInput最后会自己写LastHttpContent
+			lastContentFuture = ctx.writeAndFlush(new HttpChunkedInput(new CachedChunkedFile(handle, start, length)));
+		}
+		finish(lastContentFuture, keepAlive);
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+		if (!(cause instanceof IOException)) {
+			cause.printStackTrace();
+		}
+		ctx.close();
+	}
+
+	/**
+	 * 把请求的路径映射到root下的文件 越出root(../ 等)返回null
+	 */
+	private Path resolve(String uri) {
+		String path = new QueryStringDecoder(uri).path();
+		if (!path.startsWith("/") || path.indexOf('\0') >= 0) {
+			return null;
+		}
+		try {
+			Path resolved = root.resolve(path.substring(1)).normalize();
+			return resolved.startsWith(root) ? resolved : null;
+		} catch (InvalidPathException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 解析单个的"bytes=start-end" "bytes=start-" "bytes=-suffixLength" 返回[start, end](end包含在内)
+	 * 没有Range头 或者是多段/看不懂的格式 返回null 按整个文件返回(RFC 7233允许忽略Range)
+	 * 格式正确但起点超出文件 返回UNSATISFIABLE
+	 */
+	static long[] parseRange(String header, long size) {
+		if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+			return null;
+		}
+		String spec = header.substring("bytes=".length()).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			if (first.isEmpty()) {
+				//最后suffixLength个字节
+				long suffixLength = Long.parseLong(last);
+				if (suffixLength < 0) {
+					return null;
+				}
+				if (suffixLength == 0 || size == 0) {
+					return UNSATISFIABLE;
+				}
+				return new long[]{Math.max(0, size - suffixLength), size - 1};
+			}
+			long start = Long.parseLong(first);
+			long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+			if (start < 0 || end < start) {
+				return null;
+			}
+			if (start >= size) {
+				return UNSATISFIABLE;
+			}
+			return new long[]{start, Math.min(end, size - 1)};
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static void sendError(ChannelHandlerContext ctx, HttpResponseStatus status, boolean keepAlive) {
+		FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status,
+				Unpooled.copiedBuffer(status + "\r\n", CharsetUtil.UTF_8));
+		response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain; charset=UTF-8");
+		HttpUtil.setContentLength(response, response.content().readableBytes());
+		HttpUtil.setKeepAlive(response, keepAlive);
+		finish(ctx.writeAndFlush(response), keepAlive);
+	}
+
+	private static void finish(ChannelFuture future, boolean keepAlive) {
+		if (!keepAlive) {
+			future.addListener(ChannelFutureListener.CLOSE);
+		}
+	}
+
+	/**
+	 * DefaultFileRegion释放时会close FileChannel 这个channel是FileChannelCache里共用的 只能放掉引用
+	 */
+	private static class CachedFileRegion extends DefaultFileRegion {
+		private final FileChannelCache.Handle handle;
+
+		CachedFileRegion(FileChannelCache.Handle handle, long position, long count) {
+			super(handle.channel(), position, count);
+			this.handle = handle;
+		}
+
+		@Override
+		protected void deallocate() {
+			handle.release();
+		}
+	}
+
+	/**
+	 * https时分块读文件 作用和ChunkedNioFile一样
+	 * 不直接用ChunkedNioFile: 这个版本从FileChannel当前的position读 共用的channel上几个请求会互相移动position
+	 * 这里每块都按绝对位置读 不碰channel的position ChunkedWriteHandler写完或者失败时会调close() 放掉引用
+	 */
+	private static class CachedChunkedFile implements ChunkedInput<ByteBuf> {
+		private final FileChannelCache.Handle handle;
+
+		private final long startOffset;
+
+		private final long endOffset;
+
+		private long offset;
+
+		private boolean closed;
+
+		CachedChunkedFile(FileChannelCache.Handle handle, long offset, long length) {
+			this.handle = handle;
+			this.startOffset = offset;
+			this.endOffset = offset + length;
+			this.offset = offset;
+		}
+
+		@Override
+		public boolean isEndOfInput() {
+			return offset >= endOffset;
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				handle.release();
+			}
+		}
+
+		@Deprecated
+		@Override
+		public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+			return readChunk(ctx.alloc());
+		}
+
+		@Override
+		public ByteBuf readChunk(ByteBufAllocator allocator) throws Exception {
+			if (offset >= endOffset) {
+				return null;
+			}
+			int chunkSize = (int) Math.min(CHUNK_SIZE, endOffset - offset);
+			ByteBuf buffer = allocator.buffer(chunkSize);
+			boolean release = true;
+			try {
+				while (buffer.readableBytes() < chunkSize) {
+					int read = buffer.writeBytes(handle.channel(), offset + buffer.readableBytes(), chunkSize - buffer.readableBytes());
+					if (read < 0) {
+						//文件在传输过程中被截短了
+						throw new EOFException("file truncated at " + (offset + buffer.readableBytes()));
+					}
+				}
+				offset += chunkSize;
+				release = false;
+				return buffer;
+			} finally {
+				if (release) {
+					buffer.release();
+				}
+			}
+		}
+
+		@Override
+		public long length() {
+			return endOffset - startOffset;
+		}
+
+		@Override
+		public long progress() {
+			return offset - startOffset;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+public class HttpFileServerInitializer extends ChannelInitializer<SocketChannel> {
+	private final SslContext sslContext;
+
+	private final HttpFileServerHandler handler;
+
+	public HttpFileServerInitializer(SslContext sslContext, HttpFileServerHandler handler) {
+		this.sslContext = sslContext;
+		this.handler = handler;
+	}
+
+	@Override
+	protected void initChannel(SocketChannel ch) {
+		ChannelPipeline pipeline = ch.pipeline();
+		if (sslContext != null) {
+			pipeline.addLast("sslHandler", sslContext.newHandler(ch.alloc()));
+		}
+		pipeline.addLast("httpServerCodec", new HttpServerCodec());
+		//GET/HEAD请求没有body 聚合成FullHttpRequest处理起来简单
+		pipeline.addLast("httpObjectAggregator", new HttpObjectAggregator(8192));
+		//https时写ChunkedInput用 明文时FileRegion直接穿过去
+		pipeline.addLast("chunkedWriteHandler", new ChunkedWriteHandler());
+		pipeline.addLast("httpFileServerHandler", handler);
+	}
+}
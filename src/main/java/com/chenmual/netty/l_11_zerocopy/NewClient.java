@@ -14,14 +14,17 @@ public class NewClient {
 		socketChannel.configureBlocking(false);
 
 
-		String filename = "H:\\tools\\pycharm-professional-2019.1.1_exe";
+		String filename = args.length > 0 ? args[0] : "H:\\tools\\pycharm-professional-2019.1.1_exe";
 		FileChannel fileChannel = new FileInputStream(filename).getChannel();
 
 
 		long startTime = System.currentTimeMillis();
 		//将filechannel的内容写到socketchannel当中
 		//方法比简单while效率更高一些,有些系统可以直接从缓存0拷贝到channel中
-		long transferCount = fileChannel.transferTo(0, fileChannel.size(), socketChannel);
+		//一次transferTo不一定发得完(非阻塞socket缓冲区满 单次最多2G) FileSender循环发 缓冲区满了等OP_WRITE
+		FileSender fileSender = new FileSender(FileSender.DEFAULT_CHUNK_SIZE, 30_000, 256 * 1024 * 1024,
+				(position, end) -> System.out.println("已发送:" + position + "/" + end));
+		long transferCount = fileSender.send(fileChannel, 0, fileChannel.size(), socketChannel);
 
 		System.out.println("发送总字节数:" + transferCount + " 耗时:" + (System.currentTimeMillis() - startTime));
 
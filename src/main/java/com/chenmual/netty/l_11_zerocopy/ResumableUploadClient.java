@@ -0,0 +1,78 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 断点续传上传 服务端是 UploadServer -Dupload.resumable=true (协议见UploadServer)
+ *
+ * 用法: ResumableUploadClient 文件 [主机 端口]  默认 localhost 8168
+ *   -Dsend.chunkSize=8388608      每次transferTo最多发多少字节
+ *   -Dsend.writeTimeout=30000     socket多久不可写算断线(ms)
+ *   -Dsend.retries=10             断线后最多重连几次 每次先问服务端已经收到多少 从那里接着发
+ */
+public class ResumableUploadClient {
+	public static void main(String[] args) throws Exception {
+		Path path = Paths.get(args[0]);
+		InetSocketAddress address = new InetSocketAddress(args.length > 1 ? args[1] : "localhost", args.length > 2 ? Integer.parseInt(args[2]) : 8168);
+		int retries = Integer.getInteger("send.retries", 10);
+
+		long startTime = System.currentTimeMillis();
+		FileSender sender = new FileSender(Long.getLong("send.chunkSize", FileSender.DEFAULT_CHUNK_SIZE),
+				Long.getLong("send.writeTimeout", 30_000), 64 * 1024 * 1024,
+				(position, end) -> System.out.printf("%d/%d %.1f%% 耗时:%d%n", position, end, position * 100.0 / end, System.currentTimeMillis() - startTime));
+		try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+			for (int attempt = 0; ; attempt++) {
+				try {
+					upload(address, path.getFileName().toString(), file, sender);
+					System.out.println("发送完成 " + file.size() + " 字节 耗时:" + (System.currentTimeMillis() - startTime));
+					return;
+				} catch (IOException e) {
+					if (attempt >= retries) {
+						throw e;
+					}
+					System.out.println("连接断开: " + e + " 第" + (attempt + 1) + "次重连");
+					Thread.sleep(Math.min(1000L << Math.min(attempt, 4), 10_000));
+				}
+			}
+		}
+	}
+
+	private static void upload(InetSocketAddress address, String name, FileChannel file, FileSender sender) throws IOException {
+		long size = file.size();
+		try (SocketChannel socketChannel = SocketChannel.open(address)) {
+			byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+			ByteBuffer header = ByteBuffer.allocate(4 + nameBytes.length + 8);
+			header.putInt(nameBytes.length).put(nameBytes).putLong(size).flip();
+			while (header.hasRemaining()) {
+				socketChannel.write(header);
+			}
+			long offset = UploadServer.readFully(socketChannel, ByteBuffer.allocate(8)).getLong();
+			if (offset == UploadServer.BUSY) {
+				//服务端上一个连接还没退出 按断线处理 过一会儿重连
+				throw new IOException("server is still receiving " + name + " on another connection");
+			}
+			if (offset > 0) {
+				System.out.println("服务端已有" + offset + "字节 从这里继续");
+			}
+
+			socketChannel.configureBlocking(false);
+			sender.send(file, offset, size, socketChannel);
+			socketChannel.configureBlocking(true);
+			socketChannel.shutdownOutput();
+
+			//服务端写完盘才回确认
+			long confirmed = UploadServer.readFully(socketChannel, ByteBuffer.allocate(8)).getLong();
+			if (confirmed != size) {
+				throw new IOException("server has " + confirmed + " bytes, expected " + size);
+			}
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 多连接分段传输: 一条TCP连接受拥塞窗口限制 在带宽大延迟高的链路上跑不满 开K条连接一起发
+ *
+ * 用法: SegmentedFileClient 文件 [主机 端口]  默认 localhost 8169  接收端是SegmentedFileServer(协议见那里)
+ *   -Dsegment.connections=4      并行连接数K
+ *   -Dsegment.size=67108864      每段多少字节
+ *   -Dsegment.retries=3          一条连接断线后最多重连几次/一段校验失败最多重发几次
+ *   -Dsegment.timeout=30000      连接/发送/等确认 多久没有进展算断线(ms)
+ *
+ * 文件切成固定大小的段 K个线程各开一条连接 每发完一段(收到接收端的确认)就去领下一段 快的连接多发 慢的少发
+ * 每段的CRC32先对mmap的文件区域计算 数据本身用FileSender(transferTo)发 不进用户态
+ * 连接断了 正在发的段放回队列由别的连接(或者重连后的自己)重发 所有段都确认了才算成功
+ * 跨机房的链路可能卡住但不断开(收不到RST) 所以socket用非阻塞模式: 发送由FileSender等OP_WRITE 等确认用Selector
+ *   超过timeout没有进展就当作断线 这一段放回队列 连接重连 不会有线程永远卡住
+ */
+public class SegmentedFileClient {
+	public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	private final InetSocketAddress address;
+
+	private final FileChannel file;
+
+	private final byte[] nameBytes;
+
+	private final long size;
+
+	private final long segmentSize;
+
+	private final long segmentCount;
+
+	private final int retries;
+
+	private final long timeoutMillis;
+
+	private final AtomicLong nextSegment = new AtomicLong();
+
+	//连接断开时没有确认的段
+	private final Queue<Long> retrySegments = new ConcurrentLinkedQueue<>();
+
+	private final AtomicLong completedSegments = new AtomicLong();
+
+	private final AtomicLong completedBytes = new AtomicLong();
+
+	private final long startTime = System.currentTimeMillis();
+
+	public SegmentedFileClient(InetSocketAddress address, FileChannel file, String name, long segmentSize, int retries,
+			long timeoutMillis) throws IOException {
+		if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("segment size must be in (0, 2G): " + segmentSize);
+		}
+		this.address = address;
+		this.file = file;
+		this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		this.size = file.size();
+		this.segmentSize = segmentSize;
+		//空文件也发一段长度为0的 接收端才会创建文件
+		this.segmentCount = Math.max(1, (size + segmentSize - 1) / segmentSize);
+		this.retries = retries;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Path path = Paths.get(args[0]);
+		InetSocketAddress address = new InetSocketAddress(args.length > 1 ? args[1] : "localhost", args.length > 2 ? Integer.parseInt(args[2]) : 8169);
+		int connections = Integer.getInteger("segment.connections", 4);
+
+		try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+			SegmentedFileClient client = new SegmentedFileClient(address, file, path.getFileName().toString(),
+					Long.getLong("segment.size", DEFAULT_SEGMENT_SIZE), Integer.getInteger("segment.retries", 3),
+					Long.getLong("segment.timeout", 30_000));
+			long startTime = System.currentTimeMillis();
+			client.transfer(connections);
+			long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+			System.out.printf("发送完成 %d 字节 %d 段 %d 条连接 耗时:%d %.1fMB/s%n", file.size(), client.segmentCount, connections,
+					elapsed, file.size() / 1024.0 / 1024 / (elapsed / 1000.0));
+		}
+	}
+
+	/**
+	 * 用connections条连接把所有段发完 某条连接彻底失败但别的连接把段都补发完了也算成功
+	 */
+	public void transfer(int connections) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(connections);
+		List<Future<Void>> futures = new ArrayList<>(connections);
+		for (int i = 0; i < connections; i++) {
+			futures.add(executor.submit(() -> {
+				sendSegments();
+				return null;
+			}));
+		}
+		executor.shutdown();
+		IOException failure = null;
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+				}
+			}
+		}
+		if (completedSegments.get() < segmentCount) {
+			throw failure != null ? failure : new IOException(completedSegments.get() + " of " + segmentCount + " segments confirmed");
+		}
+	}
+
+	/**
+	 * 一个连接线程: 不停领段来发 断线后重连
+	 */
+	private void sendSegments() throws IOException, InterruptedException {
+		FileSender sender = new FileSender(FileSender.DEFAULT_CHUNK_SIZE, timeoutMillis, 0, null);
+		for (int failures = 0; ; failures++) {
+			Long segment = null;
+			try (SocketChannel socketChannel = SocketChannel.open();
+			     Selector selector = Selector.open()) {
+				socketChannel.socket().connect(address, (int) timeoutMillis);
+				socketChannel.configureBlocking(false);
+				SelectionKey key = socketChannel.register(selector, 0);
+				while ((segment = takeSegment()) != null) {
+					sendSegment(key, sender, segment);
+					segment = null;
+				}
+				return;
+			} catch (IOException e) {
+				if (segment != null) {
+					retrySegments.add(segment);
+				}
+				if (failures >= retries) {
+					throw e;
+				}
+				System.out.println(Thread.currentThread().getName() + " 连接断开: " + e + " 第" + (failures + 1) + "次重连");
+				Thread.sleep(Math.min(1000L << Math.min(failures, 4), 10_000));
+			}
+		}
+	}
+
+	/**
+	 * 领一段来发 所有段都确认了返回null
+	 * 新的段领完了但还有段没确认时等一等: 那些段所在的连接可能断掉 要有人重发
+	 */
+	private Long takeSegment() throws InterruptedException {
+		while (completedSegments.get() < segmentCount) {
+			Long segment = retrySegments.poll();
+			if (segment != null) {
+				return segment;
+			}
+			long next = nextSegment.getAndIncrement();
+			if (next < segmentCount) {
+				return next;
+			}
+			Thread.sleep(10);
+		}
+		return null;
+	}
+
+	private void sendSegment(SelectionKey key, FileSender sender, long segment) throws IOException {
+		SocketChannel socketChannel = (SocketChannel) key.channel();
+		long offset = segment * segmentSize;
+		long length = Math.min(segmentSize, size - offset);
+		long checksum = checksum(offset, length);
+
+		ByteBuffer header = ByteBuffer.allocate(4 + nameBytes.length + 32);
+		ByteBuffer reply = ByteBuffer.allocate(1);
+		for (int attempt = 0; ; attempt++) {
+			header.clear();
+			header.putInt(nameBytes.length).put(nameBytes).putLong(size).putLong(offset).putLong(length).putLong(checksum).flip();
+			while (header.hasRemaining()) {
+				if (socketChannel.write(header) == 0) {
+					await(key, SelectionKey.OP_WRITE);
+				}
+			}
+			sender.send(file, offset, offset + length, socketChannel);
+
+			reply.clear();
+			while (reply.hasRemaining()) {
+				int n = socketChannel.read(reply);
+				if (n < 0) {
+					throw new EOFException("connection closed before segment [" + offset + ", " + (offset + length) + ") was confirmed");
+				}
+				if (n == 0) {
+					//接收端要写完盘才回确认 大段时要等一会儿
+					await(key, SelectionKey.OP_READ);
+				}
+			}
+			if (reply.get(0) == SegmentedFileServer.SEGMENT_OK) {
+				break;
+			}
+			if (attempt >= retries) {
+				throw new IOException("segment [" + offset + ", " + (offset + length) + ") checksum mismatch after " + (attempt + 1) + " attempts");
+			}
+			System.out.println("段[" + offset + ", " + (offset + length) + ") 校验失败 重发");
+		}
+
+		long done = completedBytes.addAndGet(length);
+		long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+		System.out.printf("%d/%d段 %d/%d %.1fMB/s%n", completedSegments.incrementAndGet(), segmentCount, done, size,
+				done / 1024.0 / 1024 / (elapsed / 1000.0));
+	}
+
+	/**
+	 * 等socket可读/可写 超过timeout抛SocketTimeoutException 外面当作断线处理
+	 */
+	private void await(SelectionKey key, int ops) throws IOException {
+		key.interestOps(ops);
+		try {
+			if (key.selector().select(timeoutMillis) == 0) {
+				throw new SocketTimeoutException("no progress for " + timeoutMillis + "ms on " + key.channel());
+			}
+		} finally {
+			key.selector().selectedKeys().clear();
+			key.interestOps(0);
+		}
+	}
+
+	/**
+	 * mmap文件区域算CRC32 不复制到堆上
+	 */
+	private long checksum(long offset, long length) throws IOException {
+		CRC32 crc32 = new CRC32();
+		if (length > 0) {
+			crc32.update(file.map(FileChannel.MapMode.READ_ONLY, offset, length));
+		}
+		return crc32.getValue();
+	}
+}
@@ -0,0 +1,104 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * 多连接分段传输的接收端 发送端是SegmentedFileClient
+ *
+ * 用法: SegmentedFileServer [保存目录 端口]  默认 当前目录 8169
+ *
+ * 每个连接上依次收若干段 每段:
+ *   [int 文件名字节数][文件名 UTF-8][long 文件总长度][long 偏移][long 长度][long CRC32] + 数据
+ * 数据按位置写到文件的[偏移, 偏移 + 长度) 各连接各自打开文件 互不影响 写完回一个字节: 0 校验通过 1 校验失败(发送端重发)
+ */
+public class SegmentedFileServer {
+	public static final byte SEGMENT_OK = 0;
+
+	public static final byte SEGMENT_CHECKSUM_MISMATCH = 1;
+
+	public static void main(String[] args) throws IOException {
+		Path directory = Paths.get(args.length > 0 ? args[0] : ".");
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8169;
+		ThreadLocal<FileReceiver> receivers = ThreadLocal.withInitial(FileReceiver::new);
+
+		ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+		serverSocketChannel.socket().setReuseAddress(true);
+		serverSocketChannel.bind(new InetSocketAddress(port), 1024);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		System.out.println("segmented file server listening on " + port + " -> " + directory.toAbsolutePath());
+
+		while (true) {
+			SocketChannel socketChannel = serverSocketChannel.accept();
+			executor.execute(() -> {
+				try (SocketChannel channel = socketChannel) {
+					boolean more = true;
+					while (more) {
+						more = receiveSegment(channel, directory, receivers.get());
+					}
+				} catch (IOException e) {
+					System.out.println("连接中断: " + e);
+				}
+			});
+		}
+	}
+
+	/**
+	 * 收一段 对方正常关闭连接时返回false
+	 */
+	private static boolean receiveSegment(SocketChannel socketChannel, Path directory, FileReceiver receiver) throws IOException {
+		ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+		if (socketChannel.read(lengthBuffer) < 0) {
+			return false;
+		}
+		int nameLength = UploadServer.readFully(socketChannel, lengthBuffer).getInt();
+		if (nameLength <= 0 || nameLength > UploadServer.MAX_NAME_LENGTH) {
+			throw new IOException("bad file name length " + nameLength);
+		}
+		ByteBuffer header = UploadServer.readFully(socketChannel, ByteBuffer.allocate(nameLength + 32));
+		byte[] nameBytes = new byte[nameLength];
+		header.get(nameBytes);
+		long fileSize = header.getLong();
+		long offset = header.getLong();
+		long length = header.getLong();
+		long expectedChecksum = header.getLong();
+		String name = new String(nameBytes, StandardCharsets.UTF_8);
+		if (name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 || name.indexOf('\0') >= 0 || name.equals(".") || name.equals("..")) {
+			throw new IOException("bad file name " + name);
+		}
+		if (offset < 0 || length < 0 || offset + length > fileSize) {
+			throw new IOException("bad segment " + offset + "+" + length + " of " + fileSize);
+		}
+
+		CRC32 checksum = new CRC32();
+		try (FileChannel out = FileChannel.open(directory.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			//各段到达的顺序不定 按位置写超过文件末尾时文件自动变长 不在这里扩展(另一个连接可能正在写最后一段)
+			//以前留下的同名文件更长时截掉多出来的部分 这部分不会有段写进来
+			if (out.size() > fileSize) {
+				out.truncate(fileSize);
+			}
+			receiver.receiveSegment(socketChannel, out, offset, length, checksum);
+		}
+		boolean ok = checksum.getValue() == expectedChecksum;
+		if (!ok) {
+			System.out.println(name + " [" + offset + ", " + (offset + length) + ") 校验失败");
+		}
+		ByteBuffer reply = ByteBuffer.allocate(1);
+		reply.put(ok ? SEGMENT_OK : SEGMENT_CHECKSUM_MISMATCH).flip();
+		while (reply.hasRemaining()) {
+			socketChannel.write(reply);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,127 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 本机回环上比较几种接收上传写盘的方式 主要看接收线程花了多少CPU
+ *
+ * 用法: UploadBenchmark [每轮MB数 临时目录]  默认 1024 java.io.tmpdir
+ *   -Dbench.rounds=3   每种方式跑几轮 取最快的一轮
+ *
+ *   OLD_SERVER     OldServer的循环(4K byte[]) 加上被注释掉的写文件 数据要在堆上过一遍
+ *   DIRECT_BUFFER  FileReceiver 1M direct buffer
+ *   TRANSFER_FROM  FileReceiver FileChannel.transferFrom
+ *
+ * 发送端是另一个线程 反复发同一块1M的direct buffer 不读盘
+ */
+public class UploadBenchmark {
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+		long size = (args.length > 0 ? Long.parseLong(args[0]) : 1024) * 1024 * 1024;
+		Path directory = Paths.get(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"));
+		int rounds = Integer.getInteger("bench.rounds", 3);
+
+		System.out.printf("%-14s %10s %12s %14s%n", "mode", "MB/s", "cpu(ms)", "cpu(ms)/GB");
+		for (String mode : new String[]{"OLD_SERVER", "DIRECT_BUFFER", "TRANSFER_FROM"}) {
+			long bestNanos = Long.MAX_VALUE;
+			long bestCpu = 0;
+			for (int i = 0; i < rounds; i++) {
+				long[] result = run(mode, size, directory);
+				if (result[0] < bestNanos) {
+					bestNanos = result[0];
+					bestCpu = result[1];
+				}
+			}
+			double seconds = bestNanos / 1e9;
+			double cpuMillis = bestCpu / 1e6;
+			System.out.printf("%-14s %10.1f %12.1f %14.1f%n", mode, size / 1024.0 / 1024 / seconds, cpuMillis,
+					cpuMillis * (1024.0 * 1024 * 1024) / size);
+		}
+	}
+
+	/**
+	 * 返回{耗时ns, 接收线程的CPU时间ns}
+	 */
+	private static long[] run(String mode, long size, Path directory) throws Exception {
+		Path file = Files.createTempFile(directory, "upload-bench", ".bin");
+		try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
+			serverSocketChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+			InetSocketAddress address = (InetSocketAddress) serverSocketChannel.getLocalAddress();
+			Thread sender = new Thread(() -> send(address, size), "upload-sender");
+			sender.start();
+
+			try (SocketChannel socketChannel = serverSocketChannel.accept()) {
+				long startCpu = THREAD_MX_BEAN.getCurrentThreadCpuTime();
+				long startTime = System.nanoTime();
+				long received;
+				if ("OLD_SERVER".equals(mode)) {
+					received = receiveOld(socketChannel.socket().getInputStream(), file);
+				} else {
+					FileReceiver receiver = new FileReceiver(FileReceiver.Mode.valueOf(mode), FileReceiver.DEFAULT_BUFFER_SIZE,
+							FileReceiver.DEFAULT_PREALLOCATE_SIZE, 0);
+					try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+						received = receiver.receive(socketChannel, out, 0);
+					}
+				}
+				long elapsed = System.nanoTime() - startTime;
+				long cpu = THREAD_MX_BEAN.getCurrentThreadCpuTime() - startCpu;
+				sender.join();
+				if (received != size || Files.size(file) != size) {
+					throw new IllegalStateException(mode + " received " + received + " of " + size);
+				}
+				return new long[]{elapsed, cpu};
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static long receiveOld(InputStream inputStream, Path file) throws IOException {
+		long total = 0;
+		try (FileOutputStream fileOutputStream = new FileOutputStream(file.toFile())) {
+			byte[] byteArray = new byte[4096];
+			int len;
+			while ((len = inputStream.read(byteArray, 0, byteArray.length)) != -1) {
+				fileOutputStream.write(byteArray, 0, len);
+				total += len;
+			}
+			//和FileReceiver默认一样 结束时刷盘
+			fileOutputStream.getFD().sync();
+		}
+		return total;
+	}
+
+	private static void send(InetSocketAddress address, long size) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1024 * 1024);
+		byte[] random = new byte[buffer.capacity()];
+		ThreadLocalRandom.current().nextBytes(random);
+		buffer.put(random);
+		try (SocketChannel socketChannel = SocketChannel.open(address)) {
+			long remaining = size;
+			while (remaining > 0) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), remaining));
+				while (buffer.hasRemaining()) {
+					remaining -= socketChannel.write(buffer);
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
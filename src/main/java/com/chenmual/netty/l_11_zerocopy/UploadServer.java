@@ -0,0 +1,203 @@
+package com.chenmual.netty.l_11_zerocopy;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OldServer的替代: 收到的数据用FileReceiver直接写盘 不经过堆上的byte[]
+ *
+ * 用法: UploadServer [保存目录 端口]  默认 当前目录 8168  协议和OldClient/NewClient一样 连上直接发 发完关闭
+ *   -Dupload.mode=DIRECT_BUFFER|TRANSFER_FROM   默认DIRECT_BUFFER
+ *   -Dupload.bufferSize=1048576                 每次读写多少字节
+ *   -Dupload.preallocate=67108864               每次把文件扩大多少 0不预分配(续传模式默认0)
+ *   -Dupload.forceInterval=0                    每写多少字节force一次 0只在结束时 -1不force
+ *   -Dupload.resumable=true                     断点续传协议(ResumableUploadClient):
+ *       客户端先发 [int 文件名字节数][文件名 UTF-8][long 文件总长度]
+ *       服务端回 [long 已经收到的字节数] 客户端从这个位置开始发 发完shutdownOutput
+ *         同名文件正在被另一个连接上传时回 BUSY(-1) 然后关闭 客户端过一会儿重试
+ *       服务端收到EOF后回 [long 文件现在的长度] 等于总长度就是传完了
+ *       断线时FileReceiver把文件截到已写完的位置 重连后接着传
+ *   -Dupload.readTimeout=30000                  续传模式下多久收不到数据算断线(ms)
+ *       客户端重连时旧连接可能还卡在已经断掉的socket上 要靠超时退出 退出前它会按自己的位置截断文件
+ *       所以同一个文件同时只允许一个连接上传 旧连接退出之前新连接拿到BUSY
+ *
+ * 每个连接一个线程(socket是阻塞模式 transferFrom只能这样用) 每个线程复用自己的FileReceiver
+ */
+public class UploadServer {
+	static final int MAX_NAME_LENGTH = 1024;
+
+	static final long BUSY = -1;
+
+	//正在续传的文件
+	private static final Set<Path> UPLOADING = ConcurrentHashMap.newKeySet();
+
+	public static void main(String[] args) throws IOException {
+		Path directory = Paths.get(args.length > 0 ? args[0] : ".");
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8168;
+		FileReceiver.Mode mode = FileReceiver.Mode.valueOf(System.getProperty("upload.mode", FileReceiver.Mode.DIRECT_BUFFER.name()));
+		int bufferSize = Integer.getInteger("upload.bufferSize", FileReceiver.DEFAULT_BUFFER_SIZE);
+		boolean resumable = Boolean.getBoolean("upload.resumable");
+		//续传时文件长度就是续传的起点 进程被kill时来不及截掉预分配的部分 所以默认不预分配
+		long preallocate = Long.getLong("upload.preallocate", resumable ? 0 : FileReceiver.DEFAULT_PREALLOCATE_SIZE);
+		long forceInterval = Long.getLong("upload.forceInterval", 0);
+		long readTimeout = Long.getLong("upload.readTimeout", 30_000);
+		ThreadLocal<FileReceiver> receivers = ThreadLocal.withInitial(() -> new FileReceiver(mode, bufferSize, preallocate, forceInterval));
+
+		ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+		serverSocketChannel.socket().setReuseAddress(true);
+		serverSocketChannel.bind(new InetSocketAddress(port), 1024);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		AtomicInteger sequence = new AtomicInteger();
+		System.out.println("upload server " + mode + " listening on " + port + " -> " + directory.toAbsolutePath());
+
+		while (true) {
+			SocketChannel socketChannel = serverSocketChannel.accept();
+			if (resumable) {
+				executor.execute(() -> {
+					try (SocketChannel channel = socketChannel;
+						 TimeoutReadChannel in = new TimeoutReadChannel(channel, readTimeout)) {
+						receiveResumable(in, channel, directory, receivers.get());
+					} catch (IOException e) {
+						System.out.println("上传中断: " + e);
+					}
+				});
+				continue;
+			}
+			Path file = directory.resolve("upload-" + sequence.incrementAndGet() + ".bin");
+			executor.execute(() -> {
+				long startTime = System.currentTimeMillis();
+				try (SocketChannel in = socketChannel;
+					 FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+					long total = receivers.get().receive(in, out, 0);
+					System.out.println(file.getFileName() + " 收到字节数:" + total + " 耗时:" + (System.currentTimeMillis() - startTime));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			});
+		}
+	}
+
+	/**
+	 * in是socketChannel加上读超时 读都走in 写直接写socketChannel
+	 */
+	private static void receiveResumable(ReadableByteChannel in, SocketChannel socketChannel, Path directory, FileReceiver receiver) throws IOException {
+		int nameLength = readFully(in, ByteBuffer.allocate(4)).getInt();
+		if (nameLength <= 0 || nameLength > MAX_NAME_LENGTH) {
+			throw new IOException("bad file name length " + nameLength);
+		}
+		ByteBuffer header = readFully(in, ByteBuffer.allocate(nameLength + 8));
+		byte[] nameBytes = new byte[nameLength];
+		header.get(nameBytes);
+		long totalSize = header.getLong();
+		String name = new String(nameBytes, StandardCharsets.UTF_8);
+		//只取文件名 不允许带目录
+		if (name.indexOf('/') >= 0 || name.indexOf('\\') >= 0 || name.indexOf('\0') >= 0 || name.equals(".") || name.equals("..")) {
+			throw new IOException("bad file name " + name);
+		}
+		Path file = directory.resolve(name).toAbsolutePath().normalize();
+		if (!UPLOADING.add(file)) {
+			writeLong(socketChannel, BUSY);
+			System.out.println(name + " 正在被另一个连接上传 拒绝");
+			return;
+		}
+
+		long startTime = System.currentTimeMillis();
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			long offset = out.size();
+			if (offset > totalSize) {
+				//比要传的文件还长 不是同一个文件 从头开始
+				offset = 0;
+			}
+			writeLong(socketChannel, offset);
+			long received = receiver.receive(in, out, offset);
+			long size = out.size();
+			writeLong(socketChannel, size);
+			System.out.println(name + " 从" + offset + "续传 收到字节数:" + received + " 现在" + size + "/" + totalSize
+					+ " 耗时:" + (System.currentTimeMillis() - startTime));
+		} finally {
+			//FileReceiver的截断已经做完了 下一个连接可以开始
+			UPLOADING.remove(file);
+		}
+	}
+
+	static ByteBuffer readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	static void writeLong(SocketChannel socketChannel, long value) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+		buffer.putLong(value).flip();
+		while (buffer.hasRemaining()) {
+			socketChannel.write(buffer);
+		}
+	}
+
+	/**
+	 * 给socket加读超时: 阻塞模式的SocketChannel.read不看SO_TIMEOUT 这里把socket改成非阻塞 读不到时用Selector等
+	 * 对FileReceiver来说和阻塞的socket一样: read不返回0 要么读到数据 要么-1 要么超时抛SocketTimeoutException
+	 * close只关Selector socket由调用方关
+	 */
+	static final class TimeoutReadChannel implements ReadableByteChannel {
+		private final SocketChannel channel;
+
+		private final Selector selector;
+
+		private final long timeoutMillis;
+
+		TimeoutReadChannel(SocketChannel channel, long timeoutMillis) throws IOException {
+			this.channel = channel;
+			this.timeoutMillis = timeoutMillis;
+			this.selector = Selector.open();
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ);
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			while (true) {
+				int n = channel.read(dst);
+				if (n != 0 || !dst.hasRemaining()) {
+					return n;
+				}
+				if (selector.select(timeoutMillis) == 0) {
+					throw new SocketTimeoutException("no data for " + timeoutMillis + "ms from " + channel.getRemoteAddress());
+				}
+				selector.selectedKeys().clear();
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			selector.close();
+		}
+	}
+}
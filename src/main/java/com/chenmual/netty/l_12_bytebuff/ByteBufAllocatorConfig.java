@@ -0,0 +1,218 @@
+package com.chenmual.netty.l_12_bytebuff;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocatorMetric;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.util.ResourceLeakDetector;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 所有bootstrap共用的ByteBuf分配配置 用configure(serverBootstrap)/configure(bootstrap)设置到ALLOCATOR和RCVBUF_ALLOCATOR
+ * handler里用ctx.alloc()分配 拿到的就是这里的池化allocator
+ *
+ * PooledByteBufAllocator的参数(-D设置 不设置用括号里的值):
+ *   bytebuf.directArenas   direct内存的arena数(netty默认: 2 * CPU核数 和NioEventLoopGroup默认线程数一样 每个EventLoop一个arena 互不竞争)
+ *   bytebuf.heapArenas     heap内存的arena数(同上) 默认preferDirect 堆上分配很少
+ *   bytebuf.chunkSize      每个chunk多大(4M) 必须是pageSize乘2的n次方
+ *                          netty这个版本默认16M 每个arena至少占一个chunk 核数多时光是空闲的chunk就要几百M 改小一些
+ *   bytebuf.pageSize       (8K)
+ *   bytebuf.tinyCacheSize/smallCacheSize/normalCacheSize  每个线程缓存多少个对应大小的块(512/256/64)
+ *   bytebuf.cacheForAllThreads  是否给所有线程都建线程缓存(false) false时只有EventLoop线程有 业务线程池的线程不占缓存
+ * 每次读socket的buffer大小: AdaptiveRecvByteBufAllocator 在bytebuf.recvMin ~ bytebuf.recvMax之间按上次读到的多少调整(64 2048 65536)
+ *
+ * 监控:
+ *   metrics()返回当前池的使用情况 -Dbytebuf.metricsInterval=秒数 时定期打印
+ *   JMX: com.chenmual.netty:type=PooledByteBufAllocator 可以用jconsole看 也可以改LeakDetectionLevel
+ * 内存泄漏检测: ResourceLeakDetector的级别运行时可以改 只对改了之后分配的ByteBuf生效
+ *   DISABLED 不检测  SIMPLE/ADVANCED 按io.netty.leakDetection.samplingInterval(默认128)抽样 ADVANCED记录访问位置  PARANOID 每个都检测
+ *   启动时的级别用netty自己的-Dio.netty.leakDetection.level
+ */
+public final class ByteBufAllocatorConfig {
+	public static final PooledByteBufAllocator ALLOCATOR;
+
+	public static final RecvByteBufAllocator RCVBUF_ALLOCATOR = new AdaptiveRecvByteBufAllocator(
+			Integer.getInteger("bytebuf.recvMin", 64),
+			Integer.getInteger("bytebuf.recvInitial", 2048),
+			Integer.getInteger("bytebuf.recvMax", 64 * 1024));
+
+	private static final AtomicBoolean REPORTER_STARTED = new AtomicBoolean();
+
+	static {
+		int pageSize = Integer.getInteger("bytebuf.pageSize", PooledByteBufAllocator.defaultPageSize());
+		int chunkSize = Integer.getInteger("bytebuf.chunkSize", 4 * 1024 * 1024);
+		ALLOCATOR = new PooledByteBufAllocator(true,
+				Integer.getInteger("bytebuf.heapArenas", PooledByteBufAllocator.defaultNumHeapArena()),
+				Integer.getInteger("bytebuf.directArenas", PooledByteBufAllocator.defaultNumDirectArena()),
+				pageSize,
+				maxOrder(pageSize, chunkSize),
+				Integer.getInteger("bytebuf.tinyCacheSize", PooledByteBufAllocator.defaultTinyCacheSize()),
+				Integer.getInteger("bytebuf.smallCacheSize", PooledByteBufAllocator.defaultSmallCacheSize()),
+				Integer.getInteger("bytebuf.normalCacheSize", PooledByteBufAllocator.defaultNormalCacheSize()),
+				Boolean.parseBoolean(System.getProperty("bytebuf.cacheForAllThreads", "false")),
+				0);
+		registerMBean();
+	}
+
+	private ByteBufAllocatorConfig() {
+	}
+
+	public static ServerBootstrap configure(ServerBootstrap serverBootstrap) {
+		startReporter();
+		return serverBootstrap
+				.option(ChannelOption.ALLOCATOR, ALLOCATOR)
+				.childOption(ChannelOption.ALLOCATOR, ALLOCATOR)
+				.childOption(ChannelOption.RCVBUF_ALLOCATOR, RCVBUF_ALLOCATOR);
+	}
+
+	public static Bootstrap configure(Bootstrap bootstrap) {
+		startReporter();
+		return bootstrap
+				.option(ChannelOption.ALLOCATOR, ALLOCATOR)
+				.option(ChannelOption.RCVBUF_ALLOCATOR, RCVBUF_ALLOCATOR);
+	}
+
+	public static void setLeakDetectionLevel(ResourceLeakDetector.Level level) {
+		ResourceLeakDetector.setLevel(level);
+	}
+
+	public static String metrics() {
+		PooledByteBufAllocatorMetric metric = ALLOCATOR.metric();
+		return String.format("direct=%dK heap=%dK directArenas=%d heapArenas=%d threadCaches=%d chunk=%dK activeDirect=%d activeHeap=%d leakDetection=%s",
+				metric.usedDirectMemory() / 1024, metric.usedHeapMemory() / 1024, metric.numDirectArenas(), metric.numHeapArenas(),
+				metric.numThreadLocalCaches(), metric.chunkSize() / 1024, activeDirectAllocations(), activeHeapAllocations(),
+				ResourceLeakDetector.getLevel());
+	}
+
+	static long activeDirectAllocations() {
+		long active = 0;
+		for (PoolArenaMetric arena : ALLOCATOR.metric().directArenas()) {
+			active += arena.numActiveAllocations();
+		}
+		return active;
+	}
+
+	static long activeHeapAllocations() {
+		long active = 0;
+		for (PoolArenaMetric arena : ALLOCATOR.metric().heapArenas()) {
+			active += arena.numActiveAllocations();
+		}
+		return active;
+	}
+
+	/**
+	 * chunkSize = pageSize << maxOrder
+	 */
+	private static int maxOrder(int pageSize, int chunkSize) {
+		int maxOrder = Integer.numberOfTrailingZeros(chunkSize) - Integer.numberOfTrailingZeros(pageSize);
+		if (maxOrder < 0 || pageSize << maxOrder != chunkSize) {
+			throw new IllegalArgumentException("bytebuf.chunkSize " + chunkSize + " is not pageSize(" + pageSize + ") * 2^n");
+		}
+		return maxOrder;
+	}
+
+	private static void startReporter() {
+		long interval = Long.getLong("bytebuf.metricsInterval", 0);
+		if (interval <= 0 || !REPORTER_STARTED.compareAndSet(false, true)) {
+			return;
+		}
+		Thread reporter = new Thread(() -> {
+			try {
+				while (true) {
+					Thread.sleep(interval * 1000);
+					System.out.println("[bytebuf] " + metrics());
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "bytebuf-metrics");
+		reporter.setDaemon(true);
+		reporter.start();
+	}
+
+	private static void registerMBean() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(new Metrics(), AllocatorMXBean.class, true),
+					new ObjectName("com.chenmual.netty:type=PooledByteBufAllocator"));
+		} catch (JMException e) {
+			//同一个JVM里被不同的类加载器加载了两次之类 不影响分配
+			System.out.println("[bytebuf] JMX注册失败: " + e);
+		}
+	}
+
+	public interface AllocatorMXBean {
+		long getUsedDirectMemory();
+
+		long getUsedHeapMemory();
+
+		int getNumDirectArenas();
+
+		int getNumThreadLocalCaches();
+
+		int getChunkSize();
+
+		long getActiveDirectAllocations();
+
+		long getActiveHeapAllocations();
+
+		String getLeakDetectionLevel();
+
+		void setLeakDetectionLevel(String level);
+	}
+
+	private static class Metrics implements AllocatorMXBean {
+		@Override
+		public long getUsedDirectMemory() {
+			return ALLOCATOR.metric().usedDirectMemory();
+		}
+
+		@Override
+		public long getUsedHeapMemory() {
+			return ALLOCATOR.metric().usedHeapMemory();
+		}
+
+		@Override
+		public int getNumDirectArenas() {
+			return ALLOCATOR.metric().numDirectArenas();
+		}
+
+		@Override
+		public int getNumThreadLocalCaches() {
+			return ALLOCATOR.metric().numThreadLocalCaches();
+		}
+
+		@Override
+		public int getChunkSize() {
+			return ALLOCATOR.metric().chunkSize();
+		}
+
+		@Override
+		public long getActiveDirectAllocations() {
+			return activeDirectAllocations();
+		}
+
+		@Override
+		public long getActiveHeapAllocations() {
+			return activeHeapAllocations();
+		}
+
+		@Override
+		public String getLeakDetectionLevel() {
+			return ResourceLeakDetector.getLevel().name();
+		}
+
+		@Override
+		public void setLeakDetectionLevel(String level) {
+			ByteBufAllocatorConfig.setLeakDetectionLevel(ResourceLeakDetector.Level.valueOf(level.trim().toUpperCase()));
+		}
+	}
+}
@@ -3,6 +3,7 @@ package com.chenmual.netty.l_12_bytebuff;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.util.CharsetUtil;
 
 import java.util.Iterator;
 
@@ -20,6 +21,15 @@ public class ByteBufTest2 {
 			System.out.println(iterator.next());
 		}
 
+		//用来拼消息: 4字节长度header + body 只引用body不复制(LengthFieldCompositeEncoder就是这样做的)
+		ByteBuf body = Unpooled.copiedBuffer("hello composite", CharsetUtil.UTF_8);
+		ByteBuf header = Unpooled.buffer(4).writeInt(body.readableBytes());
+		CompositeByteBuf frame = Unpooled.compositeBuffer(2).addComponents(true, header, body);
+		body.setByte(0, 'H');//改了body frame里也跟着变 说明没有复制
+		System.out.println(frame.readInt() + " " + frame.toString(CharsetUtil.UTF_8) + " nioBufferCount:" + frame.nioBufferCount());
+		frame.release();//各个组件一起释放
+		System.out.println("body refCnt:" + body.refCnt());
+
 
 	}
 }
@@ -0,0 +1,49 @@
+package com.chenmual.netty.l_12_bytebuff;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ResourceLeakDetector;
+
+/**
+ * 池化分配和Unpooled的对比 以及运行时打开泄漏检测
+ * 运行时加上-Dbytebuf.chunkSize=...等参数可以看到ByteBufAllocatorConfig的配置效果
+ */
+public class ByteBufTest3 {
+	public static void main(String[] args) throws InterruptedException {
+		System.out.println(ByteBufAllocatorConfig.metrics());
+
+		//Unpooled每次都新申请一块内存 用完等GC(direct的要等Cleaner)
+		//池化的从arena里切一块 release之后回到池里(当前线程有缓存时先放进线程缓存) 下次直接复用
+		int rounds = 1_000_000;
+		long startTime = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			ByteBuf buf = Unpooled.directBuffer(1024);
+			buf.writeLong(i);
+			buf.release();
+		}
+		System.out.println("Unpooled.directBuffer 耗时(ms):" + (System.nanoTime() - startTime) / 1_000_000);
+
+		startTime = System.nanoTime();
+		for (int i = 0; i < rounds; i++) {
+			ByteBuf buf = ByteBufAllocatorConfig.ALLOCATOR.directBuffer(1024);
+			buf.writeLong(i);
+			buf.release();
+		}
+		System.out.println("PooledByteBufAllocator 耗时(ms):" + (System.nanoTime() - startTime) / 1_000_000);
+
+		ByteBuf held = ByteBufAllocatorConfig.ALLOCATOR.directBuffer(64 * 1024);
+		System.out.println("持有一个64K的buf: " + ByteBufAllocatorConfig.metrics());
+		held.release();
+
+		//运行时改成PARANOID 之后分配的每个buf都被跟踪 没有release就被GC时打印LEAK日志(需要配置好日志输出)
+		ByteBufAllocatorConfig.setLeakDetectionLevel(ResourceLeakDetector.Level.PARANOID);
+		for (int i = 0; i < 10; i++) {
+			ByteBufAllocatorConfig.ALLOCATOR.directBuffer(128).writeInt(i);//故意不release
+		}
+		System.gc();
+		Thread.sleep(100);
+		//泄漏是在下一次分配时检查并报告的
+		ByteBufAllocatorConfig.ALLOCATOR.directBuffer(128).release();
+		System.out.println("泄漏10个之后: " + ByteBufAllocatorConfig.metrics());
+	}
+}
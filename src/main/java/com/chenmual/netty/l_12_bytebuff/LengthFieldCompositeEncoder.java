@@ -0,0 +1,37 @@
+package com.chenmual.netty.l_12_bytebuff;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+
+/**
+ * 代替new LengthFieldPrepender(4): 在消息前加4字节的长度(不含长度字段本身) 和LengthFieldBasedFrameDecoder(..., 0, 4, 0, 4)配对
+ *
+ * 长度放在从池里分配的4字节header里 和原来的body拼成一个CompositeByteBuf 只引用不复制 body多大都不会为了加4个字节拷贝一遍
+ * LengthFieldPrepender是把header和body当两条消息写出去 这里是一条消息 ChannelOutboundBuffer里一个entry 一个promise
+ * 写socket时CompositeByteBuf的nioBuffers()是两段 NIO用gathering write一次写出
+ * 没有状态 所有channel共用一个实例
+ */
+@ChannelHandler.Sharable
+public class LengthFieldCompositeEncoder extends MessageToMessageEncoder<ByteBuf> {
+	public static final LengthFieldCompositeEncoder INSTANCE = new LengthFieldCompositeEncoder();
+
+	@Override
+	protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) {
+		out.add(frame(ctx, msg.readableBytes(), msg.retain()));
+	}
+
+	/**
+	 * [4字节length][body] body的引用交给返回的CompositeByteBuf
+	 */
+	public static CompositeByteBuf frame(ChannelHandlerContext ctx, int length, ByteBuf body) {
+		ByteBuf header = ctx.alloc().buffer(4, 4).writeInt(length);
+		CompositeByteBuf frame = ctx.alloc().compositeBuffer(2);
+		frame.addComponents(true, header, body);
+		return frame;
+	}
+}
@@ -1,5 +1,6 @@
 package com.chenmual.netty.l_13_handler;
 
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
@@ -10,6 +11,7 @@ public class MyClient {
 	public static void main(String[] args) throws InterruptedException {
 		EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
 		Bootstrap bootstrap = new Bootstrap();
+		ByteBufAllocatorConfig.configure(bootstrap);
 		try {
 			bootstrap.group(eventLoopGroup).channel(NioSocketChannel.class)
 					.handler(new MyClientInitializer());
@@ -1,7 +1,7 @@
 package com.chenmual.netty.l_14_handler2;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
@@ -24,7 +24,8 @@ public class MyClientHandler extends SimpleChannelInboundHandler<ByteBuf> {
 	public void channelActive(ChannelHandlerContext ctx) throws Exception {
 		//TCP粘包
 		for(int i = 0; i < 10; i++){
-			ByteBuf buffer = Unpooled.copiedBuffer("send from client",Charset.forName("utf-8"));
+			//从channel的allocator(池化的)分配 写出去之后由netty释放
+			ByteBuf buffer = ByteBufUtil.writeUtf8(ctx.alloc(), "send from client");
 			ctx.writeAndFlush(buffer);
 		}
 	}
@@ -1,7 +1,7 @@
 package com.chenmual.netty.l_14_handler2;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 
@@ -19,7 +19,7 @@ public class MyServerHandler extends SimpleChannelInboundHandler<ByteBuf> {
 
 		System.out.println("服务器收到的消息:" + message + " 消息数量:" + (count++));
 
-		ByteBuf responseByteBuf = Unpooled.copiedBuffer(UUID.randomUUID().toString(), Charset.forName("utf-8"));
+		ByteBuf responseByteBuf = ByteBufUtil.writeUtf8(ctx.alloc(), UUID.randomUUID().toString());
 
 		ctx.writeAndFlush(responseByteBuf);
 	}
@@ -1,15 +1,23 @@
 package com.chenmual.netty.l_15_handler3;
 
-import io.netty.buffer.ByteBuf;
+import com.chenmual.netty.l_12_bytebuff.LengthFieldCompositeEncoder;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.MessageToMessageEncoder;
 
-public class MyPersonEncoder extends MessageToByteEncoder<PersonProtocol> {
+import java.util.List;
+
+/**
+ * 原来是MessageToByteEncoder: 先写长度再把content复制进out out初始只有256字节 内容大时要扩容好几次 每次扩容再复制一遍
+ * 现在content直接包成ByteBuf(不复制) 和池化的4字节长度header拼成CompositeByteBuf
+ * content是堆上的byte[] NIO写socket前还会复制到direct内存一次 这次复制省不掉 但只有这一次
+ */
+public class MyPersonEncoder extends MessageToMessageEncoder<PersonProtocol> {
 	@Override
-	protected void encode(ChannelHandlerContext ctx,PersonProtocol msg,ByteBuf out) throws Exception {
+	protected void encode(ChannelHandlerContext ctx,PersonProtocol msg,List<Object> out) throws Exception {
 		System.out.println("my encoder started");
-		out.writeInt(msg.getLength());//先写长度
-		out.writeBytes(msg.getContent());//再写内容
+		//先写长度 再接内容
+		out.add(LengthFieldCompositeEncoder.frame(ctx, msg.getLength(), Unpooled.wrappedBuffer(msg.getContent())));
 	}
 
 }
@@ -1,5 +1,6 @@
 package com.chenmual.netty.l_15_handler3;
 
+import com.chenmual.netty.l_12_bytebuff.ByteBufAllocatorConfig;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
@@ -13,6 +14,7 @@ public class MyServer{
 
 			try {
 				ServerBootstrap serverBootstrap = new ServerBootstrap();
+				ByteBufAllocatorConfig.configure(serverBootstrap);
 				serverBootstrap.group(bossGroup, workerGroup).channel(NioServerSocketChannel.class)
 						.childHandler(new MyServerInitializer15());
 
@@ -0,0 +1,535 @@
+// Generated by the protocol buffer compiler.  DO NOT EDIT!
+// source: Student.proto
+
+package com.chenmual.proto;
+
+/**
+ * <pre>
+ *年龄区间查询 [min_age, max_age] 两端都包含
+ * </pre>
+ *
+ * Protobuf type {@code com.chenmual.proto.StudentAgeRangeRequest}
+ */
+public  final class StudentAgeRangeRequest extends
+    com.google.protobuf.GeneratedMessageV3 implements
+    // @@protoc_insertion_point(message_implements:com.chenmual.proto.StudentAgeRangeRequest)
+    StudentAgeRangeRequestOrBuilder {
+private static final long serialVersionUID = 0L;
+  // Use StudentAgeRangeRequest.newBuilder() to construct.
+  private StudentAgeRangeRequest(com.google.protobuf.GeneratedMessageV3.Builder<?> builder) {
+    super(builder);
+  }
+  private StudentAgeRangeRequest() {
+  }
+
+  @java.lang.Override
+  public final com.google.protobuf.UnknownFieldSet
+  getUnknownFields() {
+    return this.unknownFields;
+  }
+  private StudentAgeRangeRequest(
+      com.google.protobuf.CodedInputStream input,
+      com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+      throws com.google.protobuf.InvalidProtocolBufferException {
+    this();
+    if (extensionRegistry == null) {
+      throw new java.lang.NullPointerException();
+    }
+    int mutable_bitField0_ = 0;
+    com.google.protobuf.UnknownFieldSet.Builder unknownFields =
+        com.google.protobuf.UnknownFieldSet.newBuilder();
+    try {
+      boolean done = false;
+      while (!done) {
+        int tag = input.readTag();
+        switch (tag) {
+          case 0:
+            done = true;
+            break;
+          case 8: {
+
+            minAge_ = input.readInt32();
+            break;
+          }
+          case 16: {
+
+            maxAge_ = input.readInt32();
+            break;
+          }
+          default: {
+            if (!parseUnknownField(
+                input, unknownFields, extensionRegistry, tag)) {
+              done = true;
+            }
+            break;
+          }
+        }
+      }
+    } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+      throw e.setUnfinishedMessage(this);
+    } catch (java.io.IOException e) {
+      throw new com.google.protobuf.InvalidProtocolBufferException(
+          e).setUnfinishedMessage(this);
+    } finally {
+      this.unknownFields = unknownFields.build();
+      makeExtensionsImmutable();
+    }
+  }
+  public static final com.google.protobuf.Descriptors.Descriptor
+      getDescriptor() {
+    return com.chenmual.proto.StudentProto.internal_static_com_chenmual_proto_StudentAgeRangeRequest_descriptor;
+  }
+
+  @java.lang.Override
+  protected com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+      internalGetFieldAccessorTable() {
+    return com.chenmual.proto.StudentProto.internal_static_com_chenmual_proto_StudentAgeRangeRequest_fieldAccessorTable
+        .ensureFieldAccessorsInitialized(
+            com.chenmual.proto.StudentAgeRangeRequest.class, com.chenmual.proto.StudentAgeRangeRequest.Builder.class);
+  }
+
+  public static final int MIN_AGE_FIELD_NUMBER = 1;
+  private int minAge_;
+  /**
+   * <code>int32 min_age = 1;</code>
+   */
+  public int getMinAge() {
+    return minAge_;
+  }
+
+  public static final int MAX_AGE_FIELD_NUMBER = 2;
+  private int maxAge_;
+  /**
+   * <code>int32 max_age = 2;</code>
+   */
+  public int getMaxAge() {
+    return maxAge_;
+  }
+
+  private byte memoizedIsInitialized = -1;
+  @java.lang.Override
+  public final boolean isInitialized() {
+    byte isInitialized = memoizedIsInitialized;
+    if (isInitialized == 1) return true;
+    if (isInitialized == 0) return false;
+
+    memoizedIsInitialized = 1;
+    return true;
+  }
+
+  @java.lang.Override
+  public void writeTo(com.google.protobuf.CodedOutputStream output)
+                      throws java.io.IOException {
+    if (minAge_ != 0) {
+      output.writeInt32(1, minAge_);
+    }
+    if (maxAge_ != 0) {
+      output.writeInt32(2, maxAge_);
+    }
+    unknownFields.writeTo(output);
+  }
+
+  @java.lang.Override
+  public int getSerializedSize() {
+    int size = memoizedSize;
+    if (size != -1) return size;
+
+    size = 0;
+    if (minAge_ != 0) {
+      size += com.google.protobuf.CodedOutputStream
+        .computeInt32Size(1, minAge_);
+    }
+    if (maxAge_ != 0) {
+      size += com.google.protobuf.CodedOutputStream
+        .computeInt32Size(2, maxAge_);
+    }
+    size += unknownFields.getSerializedSize();
+    memoizedSize = size;
+    return size;
+  }
+
+  @java.lang.Override
+  public boolean equals(final java.lang.Object obj) {
+    if (obj == this) {
+     return true;
+    }
+    if (!(obj instanceof com.chenmual.proto.StudentAgeRangeRequest)) {
+      return super.equals(obj);
+    }
+    com.chenmual.proto.StudentAgeRangeRequest other = (com.chenmual.proto.StudentAgeRangeRequest) obj;
+
+    if (getMinAge()
+        != other.getMinAge()) return false;
+    if (getMaxAge()
+        != other.getMaxAge()) return false;
+    if (!unknownFields.equals(other.unknownFields)) return false;
+    return true;
+  }
+
+  @java.lang.Override
+  public int hashCode() {
+    if (memoizedHashCode != 0) {
+      return memoizedHashCode;
+    }
+    int hash = 41;
+    hash = (19 * hash) + getDescriptor().hashCode();
+    hash = (37 * hash) + MIN_AGE_FIELD_NUMBER;
+    hash = (53 * hash) + getMinAge();
+    hash = (37 * hash) + MAX_AGE_FIELD_NUMBER;
+    hash = (53 * hash) + getMaxAge();
+    hash = (29 * hash) + unknownFields.hashCode();
+    memoizedHashCode = hash;
+    return hash;
+  }
+
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      java.nio.ByteBuffer data)
+      throws com.google.protobuf.InvalidProtocolBufferException {
+    return PARSER.parseFrom(data);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      java.nio.ByteBuffer data,
+      com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+      throws com.google.protobuf.InvalidProtocolBufferException {
+    return PARSER.parseFrom(data, extensionRegistry);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      com.google.protobuf.ByteString data)
+      throws com.google.protobuf.InvalidProtocolBufferException {
+    return PARSER.parseFrom(data);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      com.google.protobuf.ByteString data,
+      com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+      throws com.google.protobuf.InvalidProtocolBufferException {
+    return PARSER.parseFrom(data, extensionRegistry);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(byte[] data)
+      throws com.google.protobuf.InvalidProtocolBufferException {
+    return PARSER.parseFrom(data);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      byte[] data,
+      com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+      throws com.google.protobuf.InvalidProtocolBufferException {
+    return PARSER.parseFrom(data, extensionRegistry);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(java.io.InputStream input)
+      throws java.io.IOException {
+    return com.google.protobuf.GeneratedMessageV3
+        .parseWithIOException(PARSER, input);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      java.io.InputStream input,
+      com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+      throws java.io.IOException {
+    return com.google.protobuf.GeneratedMessageV3
+        .parseWithIOException(PARSER, input, extensionRegistry);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseDelimitedFrom(java.io.InputStream input)
+      throws java.io.IOException {
+    return com.google.protobuf.GeneratedMessageV3
+        .parseDelimitedWithIOException(PARSER, input);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseDelimitedFrom(
+      java.io.InputStream input,
+      com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+      throws java.io.IOException {
+    return com.google.protobuf.GeneratedMessageV3
+        .parseDelimitedWithIOException(PARSER, input, extensionRegistry);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      com.google.protobuf.CodedInputStream input)
+      throws java.io.IOException {
+    return com.google.protobuf.GeneratedMessageV3
+        .parseWithIOException(PARSER, input);
+  }
+  public static com.chenmual.proto.StudentAgeRangeRequest parseFrom(
+      com.google.protobuf.CodedInputStream input,
+      com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+      throws java.io.IOException {
+    return com.google.protobuf.GeneratedMessageV3
+        .parseWithIOException(PARSER, input, extensionRegistry);
+  }
+
+  @java.lang.Override
+  public Builder newBuilderForType() { return newBuilder(); }
+  public static Builder newBuilder() {
+    return DEFAULT_INSTANCE.toBuilder();
+  }
+  public static Builder newBuilder(com.chenmual.proto.StudentAgeRangeRequest prototype) {
+    return DEFAULT_INSTANCE.toBuilder().mergeFrom(prototype);
+  }
+  @java.lang.Override
+  public Builder toBuilder() {
+    return this == DEFAULT_INSTANCE
+        ? new Builder() : new Builder().mergeFrom(this);
+  }
+
+  @java.lang.Override
+  protected Builder newBuilderForType(
+      com.google.protobuf.GeneratedMessageV3.BuilderParent parent) {
+    Builder builder = new Builder(parent);
+    return builder;
+  }
+  /**
+   * <pre>
+   *年龄区间查询 [min_age, max_age] 两端都包含
+   * </pre>
+   *
+   * Protobuf type {@code com.chenmual.proto.StudentAgeRangeRequest}
+   */
+  public static final class Builder extends
+      com.google.protobuf.GeneratedMessageV3.Builder<Builder> implements
+      // @@protoc_insertion_point(builder_implements:com.chenmual.proto.StudentAgeRangeRequest)
+      com.chenmual.proto.StudentAgeRangeRequestOrBuilder {
+    public static final com.google.protobuf.Descriptors.Descriptor
+        getDescriptor() {
+      return com.chenmual.proto.StudentProto.internal_static_com_chenmual_proto_StudentAgeRangeRequest_descriptor;
+    }
+
+    @java.lang.Override
+    protected com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+        internalGetFieldAccessorTable() {
+      return com.chenmual.proto.StudentProto.internal_static_com_chenmual_proto_StudentAgeRangeRequest_fieldAccessorTable
+          .ensureFieldAccessorsInitialized(
+              com.chenmual.proto.StudentAgeRangeRequest.class, com.chenmual.proto.StudentAgeRangeRequest.Builder.class);
+    }
+
+    // Construct using com.chenmual.proto.StudentAgeRangeRequest.newBuilder()
+    private Builder() {
+      maybeForceBuilderInitialization();
+    }
+
+    private Builder(
+        com.google.protobuf.GeneratedMessageV3.BuilderParent parent) {
+      super(parent);
+      maybeForceBuilderInitialization();
+    }
+    private void maybeForceBuilderInitialization() {
+      if (com.google.protobuf.GeneratedMessageV3
+              .alwaysUseFieldBuilders) {
+      }
+    }
+    @java.lang.Override
+    public Builder clear() {
+      super.clear();
+      minAge_ = 0;
+
+      maxAge_ = 0;
+
+      return this;
+    }
+
+    @java.lang.Override
+    public com.google.protobuf.Descriptors.Descriptor
+        getDescriptorForType() {
+      return com.chenmual.proto.StudentProto.internal_static_com_chenmual_proto_StudentAgeRangeRequest_descriptor;
+    }
+
+    @java.lang.Override
+    public com.chenmual.proto.StudentAgeRangeRequest getDefaultInstanceForType() {
+      return com.chenmual.proto.StudentAgeRangeRequest.getDefaultInstance();
+    }
+
+    @java.lang.Override
+    public com.chenmual.proto.StudentAgeRangeRequest build() {
+      com.chenmual.proto.StudentAgeRangeRequest result = buildPartial();
+      if (!result.isInitialized()) {
+        throw newUninitializedMessageException(result);
+      }
+      return result;
+    }
+
+    @java.lang.Override
+    public com.chenmual.proto.StudentAgeRangeRequest buildPartial() {
+      com.chenmual.proto.StudentAgeRangeRequest result = new com.chenmual.proto.StudentAgeRangeRequest(this);
+      result.minAge_ = minAge_;
+      result.maxAge_ = maxAge_;
+      onBuilt();
+      return result;
+    }
+
+    @java.lang.Override
+    public Builder clone() {
+      return super.clone();
+    }
+    @java.lang.Override
+    public Builder setField(
+        com.google.protobuf.Descriptors.FieldDescriptor field,
+        java.lang.Object value) {
+      return super.setField(field, value);
+    }
+    @java.lang.Override
+    public Builder clearField(
+        com.google.protobuf.Descriptors.FieldDescriptor field) {
+      return super.clearField(field);
+    }
+    @java.lang.Override
+    public Builder clearOneof(
+        com.google.protobuf.Descriptors.OneofDescriptor oneof) {
+      return super.clearOneof(oneof);
+    }
+    @java.lang.Override
+    public Builder setRepeatedField(
+        com.google.protobuf.Descriptors.FieldDescriptor field,
+        int index, java.lang.Object value) {
+      return super.setRepeatedField(field, index, value);
+    }
+    @java.lang.Override
+    public Builder addRepeatedField(
+        com.google.protobuf.Descriptors.FieldDescriptor field,
+        java.lang.Object value) {
+      return super.addRepeatedField(field, value);
+    }
+    @java.lang.Override
+    public Builder mergeFrom(com.google.protobuf.Message other) {
+      if (other instanceof com.chenmual.proto.StudentAgeRangeRequest) {
+        return mergeFrom((com.chenmual.proto.StudentAgeRangeRequest)other);
+      } else {
+        super.mergeFrom(other);
+        return this;
+      }
+    }
+
+    public Builder mergeFrom(com.chenmual.proto.StudentAgeRangeRequest other) {
+      if (other == com.chenmual.proto.StudentAgeRangeRequest.getDefaultInstance()) return this;
+      if (other.getMinAge() != 0) {
+        setMinAge(other.getMinAge());
+      }
+      if (other.getMaxAge() != 0) {
+        setMaxAge(other.getMaxAge());
+      }
+      this.mergeUnknownFields(other.unknownFields);
+      onChanged();
+      return this;
+    }
+
+    @java.lang.Override
+    public final boolean isInitialized() {
+      return true;
+    }
+
+    @java.lang.Override
+    public Builder mergeFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws java.io.IOException {
+      com.chenmual.proto.StudentAgeRangeRequest parsedMessage = null;
+      try {
+        parsedMessage = PARSER.parsePartialFrom(input, extensionRegistry);
+      } catch (com.google.protobuf.InvalidProtocolBufferException e) {
+        parsedMessage = (com.chenmual.proto.StudentAgeRangeRequest) e.getUnfinishedMessage();
+        throw e.unwrapIOException();
+      } finally {
+        if (parsedMessage != null) {
+          mergeFrom(parsedMessage);
+        }
+      }
+      return this;
+    }
+
+    private int minAge_ ;
+    /**
+     * <code>int32 min_age = 1;</code>
+     */
+    public int getMinAge() {
+      return minAge_;
+    }
+    /**
+     * <code>int32 min_age = 1;</code>
+     */
+    public Builder setMinAge(int value) {
+      
+      minAge_ = value;
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>int32 min_age = 1;</code>
+     */
+    public Builder clearMinAge() {
+      
+      minAge_ = 0;
+      onChanged();
+      return this;
+    }
+
+    private int maxAge_ ;
+    /**
+     * <code>int32 max_age = 2;</code>
+     */
+    public int getMaxAge() {
+      return maxAge_;
+    }
+    /**
+     * <code>int32 max_age = 2;</code>
+     */
+    public Builder setMaxAge(int value) {
+      
+      maxAge_ = value;
+      onChanged();
+      return this;
+    }
+    /**
+     * <code>int32 max_age = 2;</code>
+     */
+    public Builder clearMaxAge() {
+      
+      maxAge_ = 0;
+      onChanged();
+      return this;
+    }
+    @java.lang.Override
+    public final Builder setUnknownFields(
+        final com.google.protobuf.UnknownFieldSet unknownFields) {
+      return super.setUnknownFields(unknownFields);
+    }
+
+    @java.lang.Override
+    public final Builder mergeUnknownFields(
+        final com.google.protobuf.UnknownFieldSet unknownFields) {
+      return super.mergeUnknownFields(unknownFields);
+    }
+
+
+    // @@protoc_insertion_point(builder_scope:com.chenmual.proto.StudentAgeRangeRequest)
+  }
+
+  // @@protoc_insertion_point(class_scope:com.chenmual.proto.StudentAgeRangeRequest)
+  private static final com.chenmual.proto.StudentAgeRangeRequest DEFAULT_INSTANCE;
+  static {
+    DEFAULT_INSTANCE = new com.chenmual.proto.StudentAgeRangeRequest();
+  }
+
+  public static com.chenmual.proto.StudentAgeRangeRequest getDefaultInstance() {
+    return DEFAULT_INSTANCE;
+  }
+
+  private static final com.google.protobuf.Parser<StudentAgeRangeRequest>
+      PARSER = new com.google.protobuf.AbstractParser<StudentAgeRangeRequest>() {
+    @java.lang.Override
+    public StudentAgeRangeRequest parsePartialFrom(
+        com.google.protobuf.CodedInputStream input,
+        com.google.protobuf.ExtensionRegistryLite extensionRegistry)
+        throws com.google.protobuf.InvalidProtocolBufferException {
+      return new StudentAgeRangeRequest(input, extensionRegistry);
+    }
+  };
+
+  public static com.google.protobuf.Parser<StudentAgeRangeRequest> parser() {
+    return PARSER;
+  }
+
+  @java.lang.Override
+  public com.google.protobuf.Parser<StudentAgeRangeRequest> getParserForType() {
+    return PARSER;
+  }
+
+  @java.lang.Override
+  public com.chenmual.proto.StudentAgeRangeRequest getDefaultInstanceForType() {
+    return DEFAULT_INSTANCE;
+  }
+
+}
+
@@ -0,0 +1,19 @@
+// Generated by the protocol buffer compiler.  DO NOT EDIT!
+// source: Student.proto
+
+package com.chenmual.proto;
+
+public interface StudentAgeRangeRequestOrBuilder extends
+    // @@protoc_insertion_point(interface_extends:com.chenmual.proto.StudentAgeRangeRequest)
+    com.google.protobuf.MessageOrBuilder {
+
+  /**
+   * <code>int32 min_age = 1;</code>
+   */
+  int getMinAge();
+
+  /**
+   * <code>int32 max_age = 2;</code>
+   */
+  int getMaxAge();
+}
@@ -29,6 +29,11 @@ public final class StudentProto {
   static final 
     com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
       internal_static_com_chenmual_proto_StudentRequest_fieldAccessorTable;
+  static final com.google.protobuf.Descriptors.Descriptor
+    internal_static_com_chenmual_proto_StudentAgeRangeRequest_descriptor;
+  static final 
+    com.google.protobuf.GeneratedMessageV3.FieldAccessorTable
+      internal_static_com_chenmual_proto_StudentAgeRangeRequest_fieldAccessorTable;
   static final com.google.protobuf.Descriptors.Descriptor
     internal_static_com_chenmual_proto_StudentResponse_descriptor;
   static final 
@@ -61,24 +66,28 @@ public final class StudentProto {
       "\n\rStudent.proto\022\022com.chenmual.proto\"\035\n\tM" +
       "yRequest\022\020\n\010username\030\001 \001(\t\"\036\n\nMyResponse" +
       "\022\020\n\010realname\030\002 \001(\t\"\035\n\016StudentRequest\022\013\n\003" +
-      "age\030\001 \001(\005\":\n\017StudentResponse\022\014\n\004name\030\001 \001" +
-      "(\t\022\013\n\003age\030\002 \001(\005\022\014\n\004city\030\003 \001(\t\"S\n\023Student" +
-      "ResponseList\022<\n\017studentResponse\030\001 \003(\0132#." +
-      "com.chenmual.proto.StudentResponse\"%\n\rSt" +
-      "reamRequest\022\024\n\014request_info\030\001 \001(\t\"\'\n\016Str" +
-      "eamResponse\022\025\n\rresponse_info\030\001 \001(\t2\217\003\n\016S" +
-      "tudentService\022X\n\025GetRealNameByUserName\022\035" +
-      ".com.chenmual.proto.MyRequest\032\036.com.chen" +
-      "mual.proto.MyResponse\"\000\022_\n\020GetStudentsBy" +
-      "Age\022\".com.chenmual.proto.StudentRequest\032" +
-      "#.com.chenmual.proto.StudentResponse\"\0000\001" +
-      "\022k\n\030GetStudentsWrapperByAges\022\".com.chenm" +
-      "ual.proto.StudentRequest\032\'.com.chenmual." +
-      "proto.StudentResponseList\"\000(\001\022U\n\006BiTalk\022" +
-      "!.com.chenmual.proto.StreamRequest\032\".com" +
-      ".chenmual.proto.StreamResponse\"\000(\0010\001B$\n\022" +
-      "com.chenmual.protoB\014StudentProtoP\001b\006prot" +
-      "o3"
+      "age\030\001 \001(\005\":\n\026StudentAgeRangeRequest\022\017\n\007m" +
+      "in_age\030\001 \001(\005\022\017\n\007max_age\030\002 \001(\005\":\n\017Student" +
+      "Response\022\014\n\004name\030\001 \001(\t\022\013\n\003age\030\002 \001(\005\022\014\n\004c" +
+      "ity\030\003 \001(\t\"S\n\023StudentResponseList\022<\n\017stud" +
+      "entResponse\030\001 \003(\0132#.com.chenmual.proto.S" +
+      "tudentResponse\"%\n\rStreamRequest\022\024\n\014reque" +
+      "st_info\030\001 \001(\t\"\'\n\016StreamResponse\022\025\n\rrespo" +
+      "nse_info\030\001 \001(\t2\375\003\n\016StudentService\022X\n\025Get" +
+      "RealNameByUserName\022\035.com.chenmual.proto." +
+      "MyRequest\032\036.com.chenmual.proto.MyRespons" +
+      "e\"\000\022_\n\020GetStudentsByAge\022\".com.chenmual.p" +
+      "roto.StudentRequest\032#.com.chenmual.proto" +
+      ".StudentResponse\"\0000\001\022k\n\030GetStudentsWrapp" +
+      "erByAges\022\".com.chenmual.proto.StudentReq" +
+      "uest\032\'.com.chenmual.proto.StudentRespons" +
+      "eList\"\000(\001\022U\n\006BiTalk\022!.com.chenmual.proto" +
+      ".StreamRequest\032\".com.chenmual.proto.Stre" +
+      "amResponse\"\000(\0010\001\022l\n\025GetStudentsByAgeRang" +
+      "e\022*.com.chenmual.proto.StudentAgeRangeRe" +
+      "quest\032#.com.chenmual.proto.StudentRespon" +
+      "se\"\0000\001B$\n\022com.chenmual.protoB\014StudentPro" +
+      "toP\001b\006proto3"
     };
     com.google.protobuf.Descriptors.FileDescriptor.InternalDescriptorAssigner assigner =
         new com.google.protobuf.Descriptors.FileDescriptor.    InternalDescriptorAssigner() {
@@ -110,26 +119,32 @@ public final class StudentProto {
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_chenmual_proto_StudentRequest_descriptor,
         new java.lang.String[] { "Age", });
-    internal_static_com_chenmual_proto_StudentResponse_descriptor =
+    internal_static_com_chenmual_proto_StudentAgeRangeRequest_descriptor =
       getDescriptor().getMessageTypes().get(3);
+    internal_static_com_chenmual_proto_StudentAgeRangeRequest_fieldAccessorTable = new
+      com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
+        internal_static_com_chenmual_proto_StudentAgeRangeRequest_descriptor,
+        new java.lang.String[] { "MinAge", "MaxAge", });
+    internal_static_com_chenmual_proto_StudentResponse_descriptor =
+      getDescriptor().getMessageTypes().get(4);
     internal_static_com_chenmual_proto_StudentResponse_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_chenmual_proto_StudentResponse_descriptor,
         new java.lang.String[] { "Name", "Age", "City", });
     internal_static_com_chenmual_proto_StudentResponseList_descriptor =
-      getDescriptor().getMessageTypes().get(4);
+      getDescriptor().getMessageTypes().get(5);
     internal_static_com_chenmual_proto_StudentResponseList_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_chenmual_proto_StudentResponseList_descriptor,
         new java.lang.String[] { "StudentResponse", });
     internal_static_com_chenmual_proto_StreamRequest_descriptor =
-      getDescriptor().getMessageTypes().get(5);
+      getDescriptor().getMessageTypes().get(6);
     internal_static_com_chenmual_proto_StreamRequest_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_chenmual_proto_StreamRequest_descriptor,
         new java.lang.String[] { "RequestInfo", });
     internal_static_com_chenmual_proto_StreamResponse_descriptor =
-      getDescriptor().getMessageTypes().get(6);
+      getDescriptor().getMessageTypes().get(7);
     internal_static_com_chenmual_proto_StreamResponse_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessageV3.FieldAccessorTable(
         internal_static_com_chenmual_proto_StreamResponse_descriptor,
@@ -155,6 +155,38 @@ public final class StudentServiceGrpc {
      return getBiTalkMethod;
   }
 
+  private static volatile io.grpc.MethodDescriptor<com.chenmual.proto.StudentAgeRangeRequest,
+      com.chenmual.proto.StudentResponse> getGetStudentsByAgeRangeMethod;
+
+  @io.grpc.stub.annotations.RpcMethod(
+      fullMethodName = SERVICE_NAME + '/' + "GetStudentsByAgeRange",
+      requestType = com.chenmual.proto.StudentAgeRangeRequest.class,
+      responseType = com.chenmual.proto.StudentResponse.class,
+      methodType = io.grpc.MethodDescriptor.MethodType.SERVER_STREAMING)
+  public static io.grpc.MethodDescriptor<com.chenmual.proto.StudentAgeRangeRequest,
+      com.chenmual.proto.StudentResponse> getGetStudentsByAgeRangeMethod() {
+    io.grpc.MethodDescriptor<com.chenmual.proto.StudentAgeRangeRequest, com.chenmual.proto.StudentResponse> getGetStudentsByAgeRangeMethod;
+    if ((getGetStudentsByAgeRangeMethod = StudentServiceGrpc.getGetStudentsByAgeRangeMethod) == null) {
+      synchronized (StudentServiceGrpc.class) {
+        if ((getGetStudentsByAgeRangeMethod = StudentServiceGrpc.getGetStudentsByAgeRangeMethod) == null) {
+          StudentServiceGrpc.getGetStudentsByAgeRangeMethod = getGetStudentsByAgeRangeMethod = 
+              io.grpc.MethodDescriptor.<com.chenmual.proto.StudentAgeRangeRequest, com.chenmual.proto.StudentResponse>newBuilder()
+              .setType(io.grpc.MethodDescriptor.MethodType.SERVER_STREAMING)
+              .setFullMethodName(generateFullMethodName(
+                  "com.chenmual.proto.StudentService", "GetStudentsByAgeRange"))
+              .setSampledToLocalTracing(true)
+              .setRequestMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  com.chenmual.proto.StudentAgeRangeRequest.getDefaultInstance()))
+              .setResponseMarshaller(io.grpc.protobuf.ProtoUtils.marshaller(
+                  com.chenmual.proto.StudentResponse.getDefaultInstance()))
+                  .setSchemaDescriptor(new StudentServiceMethodDescriptorSupplier("GetStudentsByAgeRange"))
+                  .build();
+          }
+        }
+     }
+     return getGetStudentsByAgeRangeMethod;
+  }
+
   /**
    * Creates a new async stub that supports all call types for the service
    */
@@ -210,6 +242,13 @@ public final class StudentServiceGrpc {
       return asyncUnimplementedStreamingCall(getBiTalkMethod(), responseObserver);
     }
 
+    /**
+     */
+    public void getStudentsByAgeRange(com.chenmual.proto.StudentAgeRangeRequest request,
+        io.grpc.stub.StreamObserver<com.chenmual.proto.StudentResponse> responseObserver) {
+      asyncUnimplementedUnaryCall(getGetStudentsByAgeRangeMethod(), responseObserver);
+    }
+
     @java.lang.Override public final io.grpc.ServerServiceDefinition bindService() {
       return io.grpc.ServerServiceDefinition.builder(getServiceDescriptor())
           .addMethod(
@@ -240,6 +279,13 @@ public final class StudentServiceGrpc {
                 com.chenmual.proto.StreamRequest,
                 com.chenmual.proto.StreamResponse>(
                   this, METHODID_BI_TALK)))
+          .addMethod(
+            getGetStudentsByAgeRangeMethod(),
+            asyncServerStreamingCall(
+              new MethodHandlers<
+                com.chenmual.proto.StudentAgeRangeRequest,
+                com.chenmual.proto.StudentResponse>(
+                  this, METHODID_GET_STUDENTS_BY_AGE_RANGE)))
           .build();
     }
   }
@@ -293,6 +339,14 @@ public final class StudentServiceGrpc {
       return asyncBidiStreamingCall(
           getChannel().newCall(getBiTalkMethod(), getCallOptions()), responseObserver);
     }
+
+    /**
+     */
+    public void getStudentsByAgeRange(com.chenmual.proto.StudentAgeRangeRequest request,
+        io.grpc.stub.StreamObserver<com.chenmual.proto.StudentResponse> responseObserver) {
+      asyncServerStreamingCall(
+          getChannel().newCall(getGetStudentsByAgeRangeMethod(), getCallOptions()), request, responseObserver);
+    }
   }
 
   /**
@@ -327,6 +381,14 @@ public final class StudentServiceGrpc {
       return blockingServerStreamingCall(
           getChannel(), getGetStudentsByAgeMethod(), getCallOptions(), request);
     }
+
+    /**
+     */
+    public java.util.Iterator<com.chenmual.proto.StudentResponse> getStudentsByAgeRange(
+        com.chenmual.proto.StudentAgeRangeRequest request) {
+      return blockingServerStreamingCall(
+          getChannel(), getGetStudentsByAgeRangeMethod(), getCallOptions(), request);
+    }
   }
 
   /**
@@ -358,8 +420,9 @@ public final class StudentServiceGrpc {
 
   private static final int METHODID_GET_REAL_NAME_BY_USER_NAME = 0;
   private static final int METHODID_GET_STUDENTS_BY_AGE = 1;
-  private static final int METHODID_GET_STUDENTS_WRAPPER_BY_AGES = 2;
-  private static final int METHODID_BI_TALK = 3;
+  private static final int METHODID_GET_STUDENTS_BY_AGE_RANGE = 2;
+  private static final int METHODID_GET_STUDENTS_WRAPPER_BY_AGES = 3;
+  private static final int METHODID_BI_TALK = 4;
 
   private static final class MethodHandlers<Req, Resp> implements
       io.grpc.stub.ServerCalls.UnaryMethod<Req, Resp>,
@@ -386,6 +449,10 @@ public final class StudentServiceGrpc {
           serviceImpl.getStudentsByAge((com.chenmual.proto.StudentRequest) request,
               (io.grpc.stub.StreamObserver<com.chenmual.proto.StudentResponse>) responseObserver);
           break;
+        case METHODID_GET_STUDENTS_BY_AGE_RANGE:
+          serviceImpl.getStudentsByAgeRange((com.chenmual.proto.StudentAgeRangeRequest) request,
+              (io.grpc.stub.StreamObserver<com.chenmual.proto.StudentResponse>) responseObserver);
+          break;
         default:
           throw new AssertionError();
       }
@@ -457,6 +524,7 @@ public final class StudentServiceGrpc {
               .addMethod(getGetStudentsByAgeMethod())
               .addMethod(getGetStudentsWrapperByAgesMethod())
               .addMethod(getBiTalkMethod())
+              .addMethod(getGetStudentsByAgeRangeMethod())
               .build();
         }
       }